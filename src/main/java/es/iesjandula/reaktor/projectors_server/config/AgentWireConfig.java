@@ -0,0 +1,35 @@
+package es.iesjandula.reaktor.projectors_server.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import es.iesjandula.reaktor.projectors_server.services.AgentWireEncoder;
+
+/**
+ * Esta clase registra el formato compacto de los agentes remotos.
+ * <p>
+ * El conversor se añade al final de la lista para que las peticiones que
+ * aceptan cualquier tipo ({@code *}{@code /*}) sigan recibiendo JSON: el formato
+ * compacto solo se usa cuando el agente lo pide expresamente.
+ * </p>
+ */
+@Configuration
+public class AgentWireConfig implements WebMvcConfigurer
+{
+	/** Codificador del formato compacto */
+	@Autowired
+	private AgentWireEncoder agentWireEncoder;
+
+	/**
+	 * @param converters conversores de mensajes ya configurados
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters)
+	{
+		converters.add(new AgentWireMessageConverter(this.agentWireEncoder));
+	}
+}
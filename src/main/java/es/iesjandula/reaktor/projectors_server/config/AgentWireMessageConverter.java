@@ -0,0 +1,69 @@
+package es.iesjandula.reaktor.projectors_server.config;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import es.iesjandula.reaktor.projectors_server.services.AgentWireEncoder;
+
+/**
+ * Esta clase escribe las respuestas de los endpoints de los agentes remotos en
+ * el formato compacto {@code text/vnd.reaktor.agent.v1} cuando el agente lo
+ * pide en la cabecera Accept. El formato se describe en
+ * {@link AgentWireEncoder}.
+ */
+public class AgentWireMessageConverter extends AbstractHttpMessageConverter<Object>
+{
+	/** Codificador del formato compacto */
+	private final AgentWireEncoder agentWireEncoder;
+
+	/**
+	 * @param agentWireEncoder codificador del formato compacto
+	 */
+	public AgentWireMessageConverter(AgentWireEncoder agentWireEncoder)
+	{
+		super(AgentWireEncoder.MEDIA_TYPE);
+		this.agentWireEncoder = agentWireEncoder;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz)
+	{
+		return this.agentWireEncoder.canEncode(clazz);
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType)
+	{
+		// Solo se usa para las respuestas.
+		return false;
+	}
+
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException
+	{
+		throw new HttpMessageNotReadableException("The agent wire format is only used for responses.", inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(Object body, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException
+	{
+		byte[] bytes;
+
+		try {
+			bytes = this.agentWireEncoder.encode(body);
+		} catch (IllegalArgumentException e) {
+			throw new HttpMessageNotWritableException(e.getMessage(), e);
+		}
+
+		outputMessage.getHeaders().setContentLength(bytes.length);
+		outputMessage.getBody().write(bytes);
+	}
+}
@@ -0,0 +1,31 @@
+package es.iesjandula.reaktor.projectors_server.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Esta clase configura el tiempo maximo de las respuestas asincronas que no
+ * fijan uno propio, como la exportacion en streaming del historial de eventos.
+ * <p>
+ * Con {@code @EnableWebMvc} no se aplica la propiedad
+ * {@code spring.mvc.async.request-timeout}, por lo que se configura aqui.
+ * </p>
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer
+{
+	/** Tiempo maximo en milisegundos de las respuestas asincronas */
+	@Value("${reaktor.projectors.async-request-timeout:3600000}")
+	private long asyncRequestTimeout;
+
+	/**
+	 * @param configurer configuracion del soporte asincrono
+	 */
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer)
+	{
+		configurer.setDefaultTimeout(this.asyncRequestTimeout);
+	}
+}
@@ -0,0 +1,98 @@
+package es.iesjandula.reaktor.projectors_server.config;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import es.iesjandula.reaktor.base.utils.BaseConstants;
+import es.iesjandula.reaktor.projectors_server.rest.ProjectorRemoteAgentSocketHandler;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Esta clase registra el canal WebSocket persistente de los agentes remotos.
+ * <p>
+ * El handshake pasa por la cadena de seguridad como cualquier otra peticion, por
+ * lo que el agente debe enviar su token en la cabecera Authorization y el aula
+ * en el parametro {@code projectorClassroom}.
+ * </p>
+ */
+@Slf4j
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer
+{
+	/** Ruta del canal WebSocket de los agentes remotos */
+	public static final String AGENT_SOCKET_PATH = "/projectors/agent-socket";
+
+	/** URL permitida de CORS */
+	@Value("${reaktor.urlCors}")
+	private String[] urlCors;
+
+	@Autowired
+	private ProjectorRemoteAgentSocketHandler projectorRemoteAgentSocketHandler;
+
+	/**
+	 * @param registry registro de manejadores WebSocket
+	 */
+	@Override
+	public void registerWebSocketHandlers(WebSocketHandlerRegistry registry)
+	{
+		registry.addHandler(this.projectorRemoteAgentSocketHandler, AGENT_SOCKET_PATH)
+				.addInterceptors(new AgentHandshakeInterceptor())
+				.setAllowedOrigins(urlCors);
+	}
+
+	/**
+	 * Comprueba el rol del agente y guarda su aula en los atributos de la sesion.
+	 */
+	private static class AgentHandshakeInterceptor implements HandshakeInterceptor
+	{
+		@Override
+		public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+				WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception
+		{
+			String role = "ROLE_" + BaseConstants.ROLE_CLIENTE_PROYECTOR;
+
+			boolean isRemoteAgent = request.getPrincipal() instanceof Authentication authentication
+					&& authentication.getAuthorities().stream().anyMatch(authority -> role.equals(authority.getAuthority()));
+
+			if (!isRemoteAgent) {
+				log.error("WebSocket handshake rejected: the requester is not a remote agent.");
+				response.setStatusCode(HttpStatus.FORBIDDEN);
+				return false;
+			}
+
+			String classroom = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams()
+					.getFirst(Constants.AGENT_SOCKET_CLASSROOM_ATTRIBUTE);
+
+			if (classroom == null || classroom.isBlank()) {
+				log.error("WebSocket handshake rejected: missing classroom parameter.");
+				response.setStatusCode(HttpStatus.BAD_REQUEST);
+				return false;
+			}
+
+			attributes.put(Constants.AGENT_SOCKET_CLASSROOM_ATTRIBUTE, classroom);
+			return true;
+		}
+
+		@Override
+		public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+				WebSocketHandler wsHandler, Exception exception)
+		{
+			// Nothing to do after the handshake.
+		}
+	}
+}
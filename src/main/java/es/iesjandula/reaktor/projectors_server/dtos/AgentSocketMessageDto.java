@@ -0,0 +1,37 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) representing a frame sent by a remote agent over
+ * its WebSocket channel.
+ * 
+ * <p>
+ * Two kinds of frames are accepted: {@code STATUS} frames carry the lamp status
+ * code reported by the projector, and {@code RARC} frames carry the response
+ * code (ACK/ERR) obtained after executing the event with the given ID.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentSocketMessageDto
+{
+	/**
+	 * The type of frame (e.g., "STATUS" or "RARC").
+	 */
+	private String type;
+
+	/**
+	 * The unique ID of the event the response code refers to. Only used by
+	 * {@code RARC} frames.
+	 */
+	private Long eventId;
+
+	/**
+	 * The raw code received from the projector.
+	 */
+	private String code;
+}
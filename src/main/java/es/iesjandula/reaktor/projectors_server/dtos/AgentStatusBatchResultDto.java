@@ -0,0 +1,32 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) holding the outcome of one status report of a
+ * batch: the next server event of the classroom or the error found.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentStatusBatchResultDto
+{
+	/**
+	 * The classroom of the projector.
+	 */
+	private String classroom;
+
+	/**
+	 * The server event to execute, or null if nothing is pending.
+	 */
+	private SimplifiedServerEventDto event;
+
+	/**
+	 * The error found processing the report, or null if it succeeded.
+	 */
+	private Map<String, String> error;
+}
@@ -0,0 +1,25 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Data Transfer Object (DTO) holding the outcome of every status report of a
+ * batch, in the order of the reports. It is written as a plain JSON array; its
+ * own type lets the agent wire format tell it apart from other lists.
+ */
+public class AgentStatusBatchResultListDto extends ArrayList<AgentStatusBatchResultDto>
+{
+	/**
+	 * Serial version UID for the AgentStatusBatchResultListDto class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param results The outcome of each report.
+	 */
+	public AgentStatusBatchResultListDto(Collection<AgentStatusBatchResultDto> results)
+	{
+		super(results);
+	}
+}
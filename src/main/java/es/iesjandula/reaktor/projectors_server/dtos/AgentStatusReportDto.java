@@ -0,0 +1,25 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) representing the lamp status reported for one
+ * projector in a batch sent by a remote agent that controls several projectors.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentStatusReportDto
+{
+	/**
+	 * The classroom of the projector.
+	 */
+	private String classroom;
+
+	/**
+	 * The raw status code reported by the projector.
+	 */
+	private String projectorStatus;
+}
@@ -0,0 +1,46 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) describing the state of the in-memory command
+ * catalog. Used in the control panel to check the catalog version and how
+ * often its lookups find a command.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommandCatalogStatsDto
+{
+	/**
+	 * The version of the loaded catalog. Increases on every reload.
+	 */
+	private long version;
+
+	/**
+	 * The number of commands in the catalog.
+	 */
+	private long numberOfCommands;
+
+	/**
+	 * The number of lookups by model and action that found a command.
+	 */
+	private long actionLookupHits;
+
+	/**
+	 * The number of lookups by model and action that found nothing.
+	 */
+	private long actionLookupMisses;
+
+	/**
+	 * The number of lookups by model and response code that found a command.
+	 */
+	private long codeLookupHits;
+
+	/**
+	 * The number of lookups by model and response code that found nothing.
+	 */
+	private long codeLookupMisses;
+}
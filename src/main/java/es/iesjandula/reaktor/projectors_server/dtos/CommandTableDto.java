@@ -0,0 +1,25 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Data Transfer Object (DTO) holding the command table of a projector model
+ * served to its remote agent. It is written as a plain JSON array; its own type
+ * lets the agent wire format tell it apart from other lists.
+ */
+public class CommandTableDto extends ArrayList<CommandDto>
+{
+	/**
+	 * Serial version UID for the CommandTableDto class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param commands The commands of the model.
+	 */
+	public CommandTableDto(Collection<CommandDto> commands)
+	{
+		super(commands);
+	}
+}
@@ -0,0 +1,40 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) returned by the multifile import in sync mode,
+ * holding the differences found for each uploaded file.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CsvSyncResponseDto
+{
+	/**
+	 * Whether the request was a dry run.
+	 */
+	private boolean dryRun;
+
+	/**
+	 * Differences of the commands file, or null if it was not processed.
+	 */
+	private CsvSyncResultDto commands;
+
+	/**
+	 * Why the commands file was not processed, if it was not.
+	 */
+	private String commandsMessage;
+
+	/**
+	 * Differences of the projectors file, or null if it was not processed.
+	 */
+	private CsvSyncResultDto projectors;
+
+	/**
+	 * Why the projectors file was not processed, if it was not.
+	 */
+	private String projectorsMessage;
+}
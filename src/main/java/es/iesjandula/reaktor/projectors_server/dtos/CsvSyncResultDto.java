@@ -0,0 +1,59 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) describing the differences found between an
+ * uploaded CSV file and the current contents of its table when the file is
+ * imported in sync mode.
+ * <p>
+ * The keys are the classroom for projectors and {@code model/action} for
+ * commands.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CsvSyncResultDto
+{
+	/**
+	 * Keys present in the file but not in the database.
+	 */
+	private List<String> inserted = new ArrayList<>();
+
+	/**
+	 * Keys present in both whose values differ.
+	 */
+	private List<String> updated = new ArrayList<>();
+
+	/**
+	 * Keys present in the database but not in the file.
+	 */
+	private List<String> deleted = new ArrayList<>();
+
+	/**
+	 * Number of records that are identical in the file and the database.
+	 */
+	private int unchanged;
+
+	/**
+	 * Number of malformed or conflicting lines in the file.
+	 */
+	private int numberOfLineErrors;
+
+	/**
+	 * The first malformed or conflicting lines of the file.
+	 */
+	private List<String> lineErrors = new ArrayList<>();
+
+	/**
+	 * Whether the differences were written to the database. A dry run or a file
+	 * with line errors is never applied.
+	 */
+	private boolean applied;
+}
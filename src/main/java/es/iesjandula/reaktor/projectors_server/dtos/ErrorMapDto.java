@@ -0,0 +1,17 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.HashMap;
+
+/**
+ * Data Transfer Object (DTO) holding the details of an error, as returned by
+ * {@link es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException#getMapError()}.
+ * It is written as a plain JSON object; its own type lets the agent wire format
+ * tell it apart from other maps.
+ */
+public class ErrorMapDto extends HashMap<String, String>
+{
+	/**
+	 * Serial version UID for the ErrorMapDto class.
+	 */
+	private static final long serialVersionUID = 1L;
+}
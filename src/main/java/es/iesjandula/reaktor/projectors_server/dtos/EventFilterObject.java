@@ -60,4 +60,14 @@ public class EventFilterObject
 	 * The status of the event.
 	 */
 	private String actionStatus;
+
+	/**
+	 * Lower bound (inclusive) of the creation time of the events.
+	 */
+	private LocalDateTime dateFrom;
+
+	/**
+	 * Upper bound (exclusive) of the creation time of the events.
+	 */
+	private LocalDateTime dateTo;
 }
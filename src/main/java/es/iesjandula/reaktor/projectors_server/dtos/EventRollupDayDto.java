@@ -0,0 +1,32 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) with the number of server events of a status
+ * created on a day, read from the daily rollup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventRollupDayDto
+{
+	/**
+	 * The day the events were created.
+	 */
+	private LocalDate day;
+
+	/**
+	 * The status of the events.
+	 */
+	private String actionStatus;
+
+	/**
+	 * The number of events.
+	 */
+	private Long events;
+}
@@ -0,0 +1,63 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) holding the optional filters of the event
+ * analytics endpoints, bound from the query parameters. Every filter is
+ * optional and they are combined.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventRollupFilterDto
+{
+	/**
+	 * First day of the report (inclusive).
+	 */
+	@DateTimeFormat(iso = ISO.DATE)
+	private LocalDate dateFrom;
+
+	/**
+	 * Last day of the report (inclusive).
+	 */
+	@DateTimeFormat(iso = ISO.DATE)
+	private LocalDate dateTo;
+
+	/**
+	 * The classroom of the events.
+	 */
+	private String classroom;
+
+	/**
+	 * The floor of the events.
+	 */
+	private String floor;
+
+	/**
+	 * The projector model of the events.
+	 */
+	private String model;
+
+	/**
+	 * The action of the events.
+	 */
+	private String action;
+
+	/**
+	 * The user that created the events.
+	 */
+	private String user;
+
+	/**
+	 * The status of the events.
+	 */
+	private String status;
+}
@@ -0,0 +1,31 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) with the number of server events of a status for
+ * a value of the grouping dimension (classroom, floor, model, action, user or
+ * status), read from the daily rollup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventRollupTotalDto
+{
+	/**
+	 * The value of the grouping dimension, e.g. the classroom.
+	 */
+	private String groupKey;
+
+	/**
+	 * The status of the events.
+	 */
+	private String actionStatus;
+
+	/**
+	 * The number of events.
+	 */
+	private Long events;
+}
@@ -0,0 +1,24 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) with the number of server events in a status.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventStatusCountDto
+{
+	/**
+	 * The status of the events.
+	 */
+	private String actionStatus;
+
+	/**
+	 * The number of events in the status.
+	 */
+	private Long events;
+}
@@ -0,0 +1,52 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) representing the accumulated lamp usage of a
+ * projector, for maintenance planning.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectorUsageDto
+{
+	/**
+	 * The classroom of the projector.
+	 */
+	private String classroom;
+
+	/**
+	 * The floor of the classroom.
+	 */
+	private String floor;
+
+	/**
+	 * The model of the projector.
+	 */
+	private String model;
+
+	/**
+	 * Hours the lamp has been on, up to the last report.
+	 */
+	private double lampHours;
+
+	/**
+	 * Number of times the lamp has turned on.
+	 */
+	private long lampOns;
+
+	/**
+	 * Whether the lamp is on at the last report.
+	 */
+	private boolean lampOn;
+
+	/**
+	 * Time of the last lamp status report.
+	 */
+	private LocalDateTime lastReport;
+}
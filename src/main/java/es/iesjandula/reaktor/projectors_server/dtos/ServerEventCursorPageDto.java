@@ -0,0 +1,32 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) holding a page of the server events table read in
+ * cursor mode.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerEventCursorPageDto
+{
+	/**
+	 * The events of the page, most recent first.
+	 */
+	private List<TableServerEventDto> content;
+
+	/**
+	 * Token to request the next page, or null if this is the last one.
+	 */
+	private String nextCursor;
+
+	/**
+	 * Number of events matching the filters, only informed when requested.
+	 */
+	private Long totalElements;
+}
@@ -0,0 +1,47 @@
+package es.iesjandula.reaktor.projectors_server.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) used to create the same server event for every
+ * projector matching a selector, without listing them one by one.
+ * <p>
+ * The selector filters are combined: a request with a floor and a model
+ * targets the projectors of that model on that floor. At least one filter is
+ * required unless {@code allProjectors} is set.
+ * </p>
+ *
+ * @see ServerEventBatchDto
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerEventFanOutDto
+{
+	/**
+	 * The action to perform on the selected projectors.
+	 */
+	private String action;
+
+	/**
+	 * Selects the projectors located on this floor (optional).
+	 */
+	private String floor;
+
+	/**
+	 * Selects the projectors of this model (optional).
+	 */
+	private String model;
+
+	/**
+	 * Selects the projectors currently in this status (optional).
+	 */
+	private String status;
+
+	/**
+	 * Selects every projector of the building when no other filter is given.
+	 */
+	private boolean allProjectors;
+}
@@ -0,0 +1,45 @@
+package es.iesjandula.reaktor.projectors_server.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Checkpoint of the accumulated lamp usage of a projector.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectorUsage
+{
+	/**
+	 * The classroom of the projector.
+	 */
+	@Id
+	private String classroom;
+
+	/**
+	 * Milliseconds the lamp has been reported on.
+	 */
+	private long lampMillis;
+
+	/**
+	 * Number of times the lamp has been reported turning on.
+	 */
+	private long lampOns;
+
+	/**
+	 * Whether the lamp was on at the last report.
+	 */
+	private boolean lampOn;
+
+	/**
+	 * Time of the last lamp status report.
+	 */
+	private LocalDateTime lastReport;
+}
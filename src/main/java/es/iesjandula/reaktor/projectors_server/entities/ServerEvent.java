@@ -2,6 +2,7 @@ package es.iesjandula.reaktor.projectors_server.entities;
 
 import java.time.LocalDateTime;
 
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -10,6 +11,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinColumns;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -42,7 +44,8 @@ public class ServerEvent
 	 * Unique identifier for the server event.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_event_seq")
+	@SequenceGenerator(name = "server_event_seq", sequenceName = "server_event_seq", allocationSize = Constants.EVENT_ID_ALLOCATION_SIZE)
 	private Long eventId;
 
 	/**
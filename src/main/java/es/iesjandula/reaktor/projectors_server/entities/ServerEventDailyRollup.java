@@ -0,0 +1,47 @@
+package es.iesjandula.reaktor.projectors_server.entities;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of server events created on a day for a combination of classroom,
+ * floor, model, action, user and status.
+ * <p>
+ * The rows are written only by {@link es.iesjandula.reaktor.projectors_server.services.ServerEventRollupService}
+ * and read by the analytics endpoints, so long reports never scan the raw
+ * history. Missing values of the history are stored as empty strings.
+ * </p>
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerEventDailyRollup
+{
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long rollupId;
+
+	private LocalDate eventDay;
+
+	private String classroom;
+
+	private String floor;
+
+	private String modelName;
+
+	private String action;
+
+	private String user;
+
+	private String actionStatus;
+
+	private Long eventCount;
+}
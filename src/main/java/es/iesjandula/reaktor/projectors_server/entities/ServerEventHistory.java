@@ -2,10 +2,12 @@ package es.iesjandula.reaktor.projectors_server.entities;
 
 import java.time.LocalDateTime;
 
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,8 +22,8 @@ public class ServerEventHistory {
 	 * Unique identifier for the server event.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
-	
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_event_history_seq")
+	@SequenceGenerator(name = "server_event_history_seq", sequenceName = "server_event_history_seq", allocationSize = Constants.EVENT_ID_ALLOCATION_SIZE)
 	private Long eventId;
 	
 	private String modelName;
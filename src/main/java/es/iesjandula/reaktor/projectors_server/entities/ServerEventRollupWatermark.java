@@ -0,0 +1,25 @@
+package es.iesjandula.reaktor.projectors_server.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of an incremental rollup of the server event history: every event
+ * created before {@code processedUntil} is already aggregated.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerEventRollupWatermark
+{
+	@Id
+	private String rollupName;
+
+	private LocalDateTime processedUntil;
+}
@@ -0,0 +1,43 @@
+package es.iesjandula.reaktor.projectors_server.events;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Application event published when a batch of server events has been stored in
+ * the history table.
+ * <p>
+ * It is published inside the transaction that creates the events, so listeners
+ * should use {@code @TransactionalEventListener} to react only once the rows
+ * are committed and visible to the remote agents.
+ * </p>
+ */
+@Getter
+@AllArgsConstructor
+public class ServerEventBatchCreatedEvent
+{
+	/**
+	 * The history records created by the batch, with their identifiers assigned.
+	 */
+	private final List<ServerEventHistory> serverEvents;
+
+	/**
+	 * Returns the classrooms that received at least one event that still has to be
+	 * served to its remote agent.
+	 *
+	 * @return the set of classrooms with pending events.
+	 */
+	public Set<String> getPendingClassrooms()
+	{
+		return this.serverEvents.stream()
+				.filter(serverEvent -> Constants.EVENT_STATUS_PENDING.equals(serverEvent.getActionStatus()))
+				.map(ServerEventHistory::getClassroom)
+				.collect(Collectors.toSet());
+	}
+}
@@ -0,0 +1,168 @@
+package es.iesjandula.reaktor.projectors_server.parsers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams the records of a CSV file into their table, shared by the projector
+ * and command importers.
+ * <p>
+ * The lines are stored in chunks of {@link Constants#CSV_IMPORT_CHUNK_SIZE},
+ * each one committed in its own transaction, so the memory used does not
+ * depend on the size of the file. Malformed lines are reported without
+ * aborting the file.
+ * </p>
+ * <p>
+ * Records are matched by a normalized key, since the database compares the
+ * IDs ignoring case: a record repeated in the file or already stored is
+ * skipped.
+ * </p>
+ */
+@Slf4j
+@Component
+class CsvChunkImporter
+{
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Imports the lines that follow the header of a CSV file.
+	 *
+	 * @param scanner      The scanner reading the file, positioned on the header.
+	 * @param label        Name of the records in the summary and the logs.
+	 * @param parser       Parses and validates a line into a new record.
+	 * @param key          Extracts the normalized key of a record.
+	 * @param existingKeys Returns which of the given keys are already stored,
+	 *                     normalized. Runs in the transaction of the chunk.
+	 * @param afterInsert  Runs in the transaction of each chunk that stored new
+	 *                     records, to invalidate the caches of the table.
+	 * @return Summary of records saved, skipped and lines with errors.
+	 */
+	<K, T> String importLines(Scanner scanner, String label, LineParser<T> parser, Function<T, K> key,
+			Function<Collection<K>, Set<K>> existingKeys, Runnable afterInsert)
+	{
+		int recordLine = 0;
+		int recordsSaved = 0;
+		int recordsSkipped = 0;
+		List<String> lineErrors = new ArrayList<>();
+		int numberOfLineErrors = 0;
+
+		// Records of the current chunk, by key and in file order.
+		Map<K, T> chunk = new LinkedHashMap<>();
+
+		// Skip the first line (assumed to be headers)
+		scanner.nextLine();
+
+		while (scanner.hasNextLine()) {
+			recordLine++;
+
+			try {
+				T record = parser.parse(scanner.nextLine(), recordLine);
+				K recordKey = key.apply(record);
+
+				// Repeated records inside the file are skipped like existing ones.
+				if (chunk.putIfAbsent(recordKey, record) != null) {
+					log.debug("{} record '{}' repeated in the file. Skipping it now.", label, recordKey);
+					recordsSkipped++;
+				}
+
+			} catch (ProjectorServerException e) {
+				numberOfLineErrors++;
+				if (lineErrors.size() < Constants.CSV_IMPORT_MAX_REPORTED_ERRORS) {
+					lineErrors.add(e.getMessage());
+				}
+			}
+
+			if (chunk.size() >= Constants.CSV_IMPORT_CHUNK_SIZE) {
+				int saved = this.chunkedInsert(label, chunk, existingKeys, afterInsert);
+				recordsSaved += saved;
+				recordsSkipped += chunk.size() - saved;
+				chunk.clear();
+			}
+		}
+
+		int saved = this.chunkedInsert(label, chunk, existingKeys, afterInsert);
+		recordsSaved += saved;
+		recordsSkipped += chunk.size() - saved;
+
+		String message = label + ": Records saved: " + recordsSaved + " - Records skipped: " + recordsSkipped;
+
+		if (numberOfLineErrors > 0) {
+			message += " - Lines with errors: " + numberOfLineErrors + " " + lineErrors;
+		}
+
+		log.info(message);
+		return message;
+	}
+
+	/**
+	 * Stores, in its own transaction, the records of a chunk that are not in the
+	 * database yet.
+	 *
+	 * @param label        Name of the records in the logs.
+	 * @param chunk        The parsed records of the chunk, by normalized key.
+	 * @param existingKeys Returns which of the given keys are already stored.
+	 * @param afterInsert  Runs if the chunk stored new records.
+	 * @return The number of records saved.
+	 */
+	private <K, T> int chunkedInsert(String label, Map<K, T> chunk, Function<Collection<K>, Set<K>> existingKeys,
+			Runnable afterInsert)
+	{
+		if (chunk.isEmpty()) {
+			return 0;
+		}
+
+		int saved = this.transactionTemplate.execute(status -> {
+
+			// Single query for every key of the chunk.
+			Set<K> existing = existingKeys.apply(chunk.keySet());
+
+			int newRecords = 0;
+			for (Map.Entry<K, T> entry : chunk.entrySet()) {
+				if (existing.contains(entry.getKey())) {
+					log.debug("{} record '{}' already exists in the database. Skipping it now.", label, entry.getKey());
+				} else {
+					// persist() instead of save(): the ID is assigned, so save() would merge with a SELECT per row.
+					this.entityManager.persist(entry.getValue());
+					newRecords++;
+				}
+			}
+
+			if (newRecords > 0) {
+				afterInsert.run();
+			}
+			return newRecords;
+		});
+
+		log.debug("{} chunk committed: {} saved out of {}.", label, saved, chunk.size());
+		return saved;
+	}
+
+	/**
+	 * Parses and validates a line of a CSV file.
+	 */
+	@FunctionalInterface
+	interface LineParser<T>
+	{
+		T parse(String line, int recordLine) throws ProjectorServerException;
+	}
+}
@@ -1,7 +1,7 @@
 package es.iesjandula.reaktor.projectors_server.parsers;
 
-import java.util.Optional;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -10,7 +10,10 @@ import es.iesjandula.reaktor.projectors_server.entities.Command;
 import es.iesjandula.reaktor.projectors_server.entities.ids.CommandId;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICommandParser;
 import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
+import es.iesjandula.reaktor.projectors_server.services.CommandCatalog;
+import es.iesjandula.reaktor.projectors_server.services.GeneralOverviewSnapshot;
 import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
 import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,7 +22,7 @@ import lombok.extern.slf4j.Slf4j;
  * Implementation of the {@link ICommandParser} interface for parsing command data
  * from CSV files. This service is responsible for reading a CSV file containing
  * action names, commands, and projector models, checking for existing records
- * in the database, and saving new records.
+ * in the database, and saving new records in chunks.
  * 
  * @see ICommandParser
  * 
@@ -35,6 +38,15 @@ public class ICommandPaserImpl implements ICommandParser
 
     @Autowired
     private ICommandRepository commandRepo;
+
+    @Autowired
+    private CommandCatalog commandCatalog;
+
+    @Autowired
+    private GeneralOverviewSnapshot generalOverviewSnapshot;
+
+    @Autowired
+    private CsvChunkImporter csvChunkImporter;
     
 
 
@@ -55,14 +67,17 @@ public class ICommandPaserImpl implements ICommandParser
      *     <li>Checks if the file is empty.</li>
      *     <li>Skips the first line (assumed to be the header).</li>
      *     <li>Reads and trims each subsequent line to extract the action name, command, and model name.</li>
-     *     <li>Checks if they exist in the database.</li>
-     *     <li>Saves new records if missing.</li>
-     *     <li>Skips over malformed or already existing records</li>
+     *     <li>Groups the parsed lines in chunks of {@link Constants#CSV_IMPORT_CHUNK_SIZE}.</li>
+     *     <li>Checks which commands of the chunk exist in the database with a single query.</li>
+     *     <li>Inserts the new commands of the chunk in a JDBC batch and commits.</li>
+     *     <li>Reports malformed lines and skips already existing records without aborting the file.</li>
      * </ul>
      *
+     * <p>Only one chunk is kept in memory, each one committed in its own transaction.</p>
+     *
      * @param scanner The {@link Scanner} instance reading the CSV file.
-     * @return Summary of records saved and skipped.
-     * @throws ProjectorServerException If the file is empty or an error occurs.
+     * @return Summary of records saved, skipped and lines with errors.
+     * @throws ProjectorServerException If the file is empty.
      */
     @Override
     public String parseCommands(Scanner scanner) throws ProjectorServerException
@@ -75,69 +90,67 @@ public class ICommandPaserImpl implements ICommandParser
             log.error("The received file is empty. No commands to parse.");
             throw new ProjectorServerException(493, "Empty CSV file received in parseCommands() method.");
         }
+
+        return this.csvChunkImporter.importLines(scanner, "COMMANDS", ICommandPaserImpl::parseLine,
+                ICommandPaserImpl::normalizedId,
+                ids -> this.commandRepo.findAllById(ids).stream().map(ICommandPaserImpl::normalizedId)
+                        .collect(Collectors.toSet()),
+                () -> {
+                    // Reload the in-memory catalog once the chunk is committed.
+                    this.commandCatalog.invalidate();
+                    this.generalOverviewSnapshot.invalidate();
+                });
+    }
+
+    /**
+     * Parses and validates a line of the commands CSV file.
+     *
+     * @param line       The raw line.
+     * @param recordLine The number of the line, used in the error messages.
+     * @return A new, not persisted, command.
+     * @throws ProjectorServerException If the line is malformed or has blank values.
+     */
+    static Command parseLine(String line, int recordLine) throws ProjectorServerException
+    {
         String message;
-        int recordLine = 0;
-        int recordsSkipped = 0;
-        int recordsSaved = 0;
-        
-        // Ignore the first line of the CSV file (column headers).
-        scanner.nextLine();
-
-        while (scanner.hasNextLine()) {
-            log.debug("-----------------------------------------------------------------------");
-            
-            recordLine++;
-            
-            // Expected format: action_name, command, model_name
-            String[] csvFields = scanner.nextLine().split(Constants.CSV_DELIMITER);
-            
-			if ( csvFields.length != 3 )
-			{
-				message = "ERROR: Missing value detected in the Commands CSV file in line " + recordLine + ".";
-				log.error(message);
-				throw new ProjectorServerException(499, message);
-			}
-            
-            // Skips malformed lines.
-            String actionName = csvFields[0].trim(); 
-            String command = csvFields[1].trim();
-            String modelName = csvFields[2].trim();
-            
-			// If the current line is not exactly 3 fields long, throw exception.
-			if ( actionName.isBlank() || command.isBlank() || modelName.isBlank())
-			{
-				message = "ERROR: Blank or empty value detected in the Commands CSV file in line " + recordLine + ".";
-				log.error(message);
-				throw new ProjectorServerException(499, message);
-			}
-
-            command = replaceEscapeSequences(command);
-                                    
-            // Generate a unique command ID
-            CommandId currentCommandId = new CommandId();
-            currentCommandId.setAction(actionName);
-            currentCommandId.setModelName(modelName);
-            
-            // Check if the command already exists...
-            log.debug("Parsing command '{}'.", command);
-            Optional<Command> currentCommandOptional = commandRepo.findById(currentCommandId);
-            
-            if (currentCommandOptional.isEmpty()) {
-                log.debug("Command with ID '{}' not present in DB, saving now.", currentCommandId);
-                Command currentCommand = new Command();
-                currentCommand.setAction(actionName);
-                currentCommand.setModelName(modelName);
-                currentCommand.setCommand(command);
-                commandRepo.saveAndFlush(currentCommand);
-                recordsSaved++;
-            } else {
-                log.debug("Command with ID '{}' already exists in the database. Skipping it now.", currentCommandId);
-                recordsSkipped++;
-            }
+
+        // Expected format: action_name, command, model_name
+        String[] csvFields = line.split(Constants.CSV_DELIMITER);
+
+        if ( csvFields.length != 3 )
+        {
+            message = "ERROR: Missing value detected in the Commands CSV file in line " + recordLine + ".";
+            log.error(message);
+            throw new ProjectorServerException(499, message);
         }
-        
-        message = "COMMANDS: Records saved: " + recordsSaved + " - Records skipped: " + recordsSkipped;
-        log.info(message);
-		return message;
+
+        String actionName = csvFields[0].trim();
+        String command = csvFields[1].trim();
+        String modelName = csvFields[2].trim();
+
+        if ( actionName.isBlank() || command.isBlank() || modelName.isBlank())
+        {
+            message = "ERROR: Blank or empty value detected in the Commands CSV file in line " + recordLine + ".";
+            log.error(message);
+            throw new ProjectorServerException(499, message);
+        }
+
+        Command currentCommand = new Command();
+        currentCommand.setAction(actionName);
+        currentCommand.setModelName(modelName);
+        currentCommand.setCommand(replaceEscapeSequences(command));
+        return currentCommand;
+    }
+
+    /**
+     * Builds the key a command is matched by during the import, in lower case
+     * because the database compares the IDs ignoring case.
+     *
+     * @param command The command.
+     * @return The normalized ID of the command.
+     */
+    static CommandId normalizedId(Command command)
+    {
+        return new CommandId(KeyUtils.normalize(command.getModelName()), KeyUtils.normalize(command.getAction()));
     }
 }
@@ -0,0 +1,435 @@
+package es.iesjandula.reaktor.projectors_server.parsers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CsvSyncResultDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
+import es.iesjandula.reaktor.projectors_server.entities.Command;
+import es.iesjandula.reaktor.projectors_server.entities.Projector;
+import es.iesjandula.reaktor.projectors_server.entities.ids.CommandId;
+import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICsvSynchronizer;
+import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRepository;
+import es.iesjandula.reaktor.projectors_server.services.CommandCatalog;
+import es.iesjandula.reaktor.projectors_server.services.GeneralOverviewSnapshot;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementation of {@link ICsvSynchronizer} based on a keyed comparison of
+ * record fingerprints.
+ * <p>
+ * The uploaded file is indexed by primary key and compared with a fingerprint
+ * of every stored record, read with a single query. The keys are compared in
+ * lower case, as the database does, so a line that only changes the case of a
+ * key matches its stored record instead of replacing it. Only the differences are
+ * written, in chunks of {@link Constants#CSV_IMPORT_CHUNK_SIZE} records, so
+ * synchronizing an unchanged file costs one read and no writes.
+ * </p>
+ * <p>
+ * The differences of a file are applied in a single transaction, so the table
+ * either matches the file or is left untouched. A file with malformed or
+ * conflicting lines is never applied, since a skipped line would otherwise
+ * delete its record.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ICsvSynchronizerImpl implements ICsvSynchronizer
+{
+	/**
+	 * Separator of the values of a fingerprint. Cannot appear in a CSV value.
+	 */
+	private static final String FINGERPRINT_SEPARATOR = "\u001F";
+
+	@Autowired
+	private IProjectorRepository projectorRepository;
+
+	@Autowired
+	private ICommandRepository commandRepository;
+
+	@Autowired
+	private IServerEventRepository serverEventRepository;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	private CommandCatalog commandCatalog;
+
+	@Autowired
+	private GeneralOverviewSnapshot generalOverviewSnapshot;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public CsvSyncResultDto synchronizeProjectors(Scanner scanner, boolean dryRun) throws ProjectorServerException
+	{
+		log.debug("Projector synchronization initiated, dry run: {}.", dryRun);
+
+		if (!scanner.hasNextLine()) {
+			log.error("The received file is empty. No projectors to synchronize.");
+			throw new ProjectorServerException(492, "Empty CSV file received in synchronizeProjectors() method.");
+		}
+
+		CsvSyncResultDto result = new CsvSyncResultDto();
+
+		Map<String, Projector> uploaded = this.readFile(scanner, IProjectorParserImpl::parseLine,
+				projector -> KeyUtils.normalize(projector.getClassroom()), this::fingerprint, result);
+
+		if (uploaded.isEmpty() && result.getNumberOfLineErrors() == 0) {
+			log.error("The received file has no projectors. Synchronizing it would delete every projector.");
+			throw new ProjectorServerException(492, "The projectors CSV file has no records to synchronize.");
+		}
+
+		this.transactionTemplate.executeWithoutResult(status -> {
+
+			// Fingerprint and stored spelling of every projector, by lower-case classroom.
+			List<ProjectorInfoDto> stored = this.projectorRepository.findAllProjectorsAsDto();
+
+			Map<String, String> current = stored.stream()
+					.collect(Collectors.toMap(projector -> KeyUtils.normalize(projector.getClassroom()),
+							projector -> this.fingerprint(projector.getModel(), projector.getFloorname())));
+
+			Map<String, String> storedLabels = stored.stream()
+					.collect(Collectors.toMap(projector -> KeyUtils.normalize(projector.getClassroom()),
+							ProjectorInfoDto::getClassroom));
+
+			Diff<String, Projector> diff = this.diff(uploaded, current, this::fingerprint);
+			this.describe(diff, Projector::getClassroom, storedLabels, result);
+
+			if (!dryRun && result.getNumberOfLineErrors() == 0) {
+				this.applyProjectors(diff);
+				result.setApplied(true);
+			}
+		});
+
+		log.info("PROJECTORS sync: {} inserted - {} updated - {} deleted - {} unchanged - {} lines with errors - applied: {}",
+				result.getInserted().size(), result.getUpdated().size(), result.getDeleted().size(),
+				result.getUnchanged(), result.getNumberOfLineErrors(), result.isApplied());
+
+		return result;
+	}
+
+	@Override
+	public CsvSyncResultDto synchronizeCommands(Scanner scanner, boolean dryRun) throws ProjectorServerException
+	{
+		log.debug("Commands synchronization initiated, dry run: {}.", dryRun);
+
+		if (!scanner.hasNextLine()) {
+			log.error("The received file is empty. No commands to synchronize.");
+			throw new ProjectorServerException(493, "Empty CSV file received in synchronizeCommands() method.");
+		}
+
+		CsvSyncResultDto result = new CsvSyncResultDto();
+
+		Map<CommandId, Command> uploaded = this.readFile(scanner, ICommandPaserImpl::parseLine,
+				ICommandPaserImpl::normalizedId, this::fingerprint, result);
+
+		if (uploaded.isEmpty() && result.getNumberOfLineErrors() == 0) {
+			log.error("The received file has no commands. Synchronizing it would delete every command.");
+			throw new ProjectorServerException(493, "The commands CSV file has no records to synchronize.");
+		}
+
+		this.transactionTemplate.executeWithoutResult(status -> {
+
+			// Fingerprint and stored spelling of every command, by lower-case ID.
+			List<CommandDto> stored = this.commandRepository.findAllCommandsAsDto();
+
+			Map<CommandId, String> current = stored.stream()
+					.collect(Collectors.toMap(this::normalizedId, CommandDto::getCommand));
+
+			Map<CommandId, String> storedLabels = stored.stream()
+					.collect(Collectors.toMap(this::normalizedId,
+							command -> this.label(command.getModelName(), command.getAction())));
+
+			Diff<CommandId, Command> diff = this.diff(uploaded, current, this::fingerprint);
+			this.describe(diff, command -> this.label(command.getModelName(), command.getAction()), storedLabels,
+					result);
+
+			if (!dryRun && result.getNumberOfLineErrors() == 0) {
+				this.applyCommands(diff);
+				result.setApplied(true);
+			}
+		});
+
+		log.info("COMMANDS sync: {} inserted - {} updated - {} deleted - {} unchanged - {} lines with errors - applied: {}",
+				result.getInserted().size(), result.getUpdated().size(), result.getDeleted().size(),
+				result.getUnchanged(), result.getNumberOfLineErrors(), result.isApplied());
+
+		return result;
+	}
+
+	/**
+	 * Reads every line of a CSV file, indexing the parsed records by key.
+	 * <p>
+	 * Unlike the regular import, the whole file is kept in memory, since the
+	 * records to delete are only known once the file has been read.
+	 * </p>
+	 *
+	 * @param scanner     The scanner reading the file.
+	 * @param parser      Parses and validates a line.
+	 * @param key         Extracts the normalized key of a record.
+	 * @param fingerprint Builds the fingerprint of a record.
+	 * @param result      Collects the line errors.
+	 * @return The parsed records, by key and in file order.
+	 */
+	private <K, T> Map<K, T> readFile(Scanner scanner, LineParser<T> parser, Function<T, K> key,
+			Function<T, String> fingerprint, CsvSyncResultDto result)
+	{
+		Map<K, T> uploaded = new LinkedHashMap<>();
+		int recordLine = 0;
+
+		// Skip the first line (assumed to be headers)
+		scanner.nextLine();
+
+		while (scanner.hasNextLine()) {
+			recordLine++;
+
+			try {
+				T record = parser.parse(scanner.nextLine(), recordLine);
+				T previous = uploaded.putIfAbsent(key.apply(record), record);
+
+				// Repeated lines are harmless, conflicting ones leave the expected value undefined.
+				if (previous != null && !fingerprint.apply(previous).equals(fingerprint.apply(record))) {
+					String message = "ERROR: Conflicting repeated record in the CSV file in line " + recordLine + ".";
+					log.error(message);
+					throw new ProjectorServerException(499, message);
+				}
+
+			} catch (ProjectorServerException e) {
+				result.setNumberOfLineErrors(result.getNumberOfLineErrors() + 1);
+				if (result.getLineErrors().size() < Constants.CSV_IMPORT_MAX_REPORTED_ERRORS) {
+					result.getLineErrors().add(e.getMessage());
+				}
+			}
+		}
+
+		return uploaded;
+	}
+
+	/**
+	 * Compares the uploaded records with the fingerprints of the stored ones.
+	 *
+	 * @param uploaded    The uploaded records, by key.
+	 * @param current     The fingerprints of the stored records, by key.
+	 * @param fingerprint Builds the fingerprint of an uploaded record.
+	 * @return The records to insert, update and delete.
+	 */
+	private <K, T> Diff<K, T> diff(Map<K, T> uploaded, Map<K, String> current, Function<T, String> fingerprint)
+	{
+		Diff<K, T> diff = new Diff<>();
+
+		for (Map.Entry<K, T> entry : uploaded.entrySet()) {
+			String stored = current.get(entry.getKey());
+
+			if (stored == null) {
+				diff.inserts.put(entry.getKey(), entry.getValue());
+			} else if (stored.equals(fingerprint.apply(entry.getValue()))) {
+				diff.unchanged++;
+			} else {
+				diff.updates.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		for (K storedKey : current.keySet()) {
+			if (!uploaded.containsKey(storedKey)) {
+				diff.deletes.add(storedKey);
+			}
+		}
+
+		return diff;
+	}
+
+	/**
+	 * Copies the records of a diff to the result returned to the client, with
+	 * the spelling of the file or of the table.
+	 *
+	 * @param diff         The differences found.
+	 * @param label        Formats an uploaded record.
+	 * @param storedLabels The stored spelling of the keys, by normalized key.
+	 * @param result       The result to fill.
+	 */
+	private <K, T> void describe(Diff<K, T> diff, Function<T, String> label, Map<K, String> storedLabels,
+			CsvSyncResultDto result)
+	{
+		diff.inserts.values().forEach(record -> result.getInserted().add(label.apply(record)));
+		diff.updates.values().forEach(record -> result.getUpdated().add(label.apply(record)));
+		diff.deletes.forEach(key -> result.getDeleted().add(storedLabels.get(key)));
+		result.setUnchanged(diff.unchanged);
+	}
+
+	/**
+	 * Writes the differences of the projectors file. Must run inside a
+	 * transaction.
+	 *
+	 * @param diff The differences found.
+	 */
+	private void applyProjectors(Diff<String, Projector> diff)
+	{
+		// The bulk deletes skip the cascade, so the server events go first.
+		for (List<String> chunk : chunks(diff.deletes)) {
+			this.serverEventRepository.deleteByProjectorClassrooms(chunk);
+			this.projectorRepository.deleteProjectorsByClassrooms(chunk);
+		}
+
+		// The status of an updated projector is kept.
+		for (List<String> chunk : chunks(new ArrayList<>(diff.updates.keySet()))) {
+			for (Projector stored : this.projectorRepository.findAllById(chunk)) {
+				Projector uploaded = diff.updates.get(KeyUtils.normalize(stored.getClassroom()));
+				stored.setModel(uploaded.getModel());
+				stored.setFloor(uploaded.getFloor());
+			}
+			this.flushAndClear();
+		}
+
+		for (List<Projector> chunk : chunks(new ArrayList<>(diff.inserts.values()))) {
+			chunk.forEach(this.entityManager::persist);
+			this.flushAndClear();
+		}
+
+		if (!diff.isEmpty()) {
+			this.projectorRegistry.invalidate();
+			this.generalOverviewSnapshot.invalidate();
+		}
+	}
+
+	/**
+	 * Writes the differences of the commands file. Must run inside a
+	 * transaction.
+	 *
+	 * @param diff The differences found.
+	 */
+	private void applyCommands(Diff<CommandId, Command> diff)
+	{
+		// One statement per model and chunk of actions, server events first.
+		Map<String, List<String>> deletedActionsByModel = diff.deletes.stream()
+				.collect(Collectors.groupingBy(CommandId::getModelName, LinkedHashMap::new,
+						Collectors.mapping(CommandId::getAction, Collectors.toList())));
+
+		for (Map.Entry<String, List<String>> entry : deletedActionsByModel.entrySet()) {
+			for (List<String> chunk : chunks(entry.getValue())) {
+				this.serverEventRepository.deleteByCommands(entry.getKey(), chunk);
+				this.commandRepository.deleteCommandsByModelNameAndActions(entry.getKey(), chunk);
+			}
+		}
+
+		for (List<CommandId> chunk : chunks(new ArrayList<>(diff.updates.keySet()))) {
+			for (Command stored : this.commandRepository.findAllById(chunk)) {
+				Command uploaded = diff.updates.get(ICommandPaserImpl.normalizedId(stored));
+				stored.setCommand(uploaded.getCommand());
+			}
+			this.flushAndClear();
+		}
+
+		for (List<Command> chunk : chunks(new ArrayList<>(diff.inserts.values()))) {
+			chunk.forEach(this.entityManager::persist);
+			this.flushAndClear();
+		}
+
+		if (!diff.isEmpty()) {
+			this.commandCatalog.invalidate();
+			this.generalOverviewSnapshot.invalidate();
+		}
+	}
+
+	/**
+	 * Sends the pending statements of a chunk as a JDBC batch and detaches its
+	 * entities, so the persistence context does not grow with the file.
+	 */
+	private void flushAndClear()
+	{
+		this.entityManager.flush();
+		this.entityManager.clear();
+	}
+
+	/**
+	 * Splits a list in chunks of {@link Constants#CSV_IMPORT_CHUNK_SIZE}
+	 * elements.
+	 *
+	 * @param elements The list to split.
+	 * @return Views of the consecutive chunks of the list.
+	 */
+	private static <E> List<List<E>> chunks(List<E> elements)
+	{
+		List<List<E>> chunks = new ArrayList<>();
+		for (int from = 0; from < elements.size(); from += Constants.CSV_IMPORT_CHUNK_SIZE) {
+			chunks.add(elements.subList(from, Math.min(from + Constants.CSV_IMPORT_CHUNK_SIZE, elements.size())));
+		}
+		return chunks;
+	}
+
+	private String fingerprint(String... values)
+	{
+		return String.join(FINGERPRINT_SEPARATOR, values);
+	}
+
+	private String fingerprint(Projector projector)
+	{
+		return this.fingerprint(projector.getModel(), projector.getFloor());
+	}
+
+	private String fingerprint(Command command)
+	{
+		return this.fingerprint(command.getCommand());
+	}
+
+	private String label(String modelName, String action)
+	{
+		return modelName + "/" + action;
+	}
+
+	private CommandId normalizedId(CommandDto command)
+	{
+		return new CommandId(KeyUtils.normalize(command.getModelName()), KeyUtils.normalize(command.getAction()));
+	}
+
+	/**
+	 * Parses and validates a line of a CSV file.
+	 */
+	@FunctionalInterface
+	private interface LineParser<T>
+	{
+		T parse(String line, int recordLine) throws ProjectorServerException;
+	}
+
+	/**
+	 * Differences between an uploaded file and its table.
+	 */
+	private static class Diff<K, T>
+	{
+		private final Map<K, T> inserts = new LinkedHashMap<>();
+
+		private final Map<K, T> updates = new LinkedHashMap<>();
+
+		private final List<K> deletes = new ArrayList<>();
+
+		private int unchanged;
+
+		private boolean isEmpty()
+		{
+			return this.inserts.isEmpty() && this.updates.isEmpty() && this.deletes.isEmpty();
+		}
+	}
+}
@@ -1,9 +1,7 @@
 package es.iesjandula.reaktor.projectors_server.parsers;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -11,9 +9,11 @@ import org.springframework.stereotype.Service;
 import es.iesjandula.reaktor.projectors_server.entities.Projector;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.IProjectorParser;
 import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.services.GeneralOverviewSnapshot;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
 import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
 import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -56,13 +56,23 @@ public class IProjectorParserImpl implements IProjectorParser {
 	@Autowired
 	private IProjectorRepository projectorRepository;
 
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	private GeneralOverviewSnapshot generalOverviewSnapshot;
+
+	@Autowired
+	private CsvChunkImporter csvChunkImporter;
+
 	/**
 	 * Parses projector records from the provided {@link Scanner} input, reading a
 	 * CSV file.
 	 * 
 	 * <p>
-	 * Ensures that all necessary entities exist in the database before creating new
-	 * projectors.
+	 * The file is streamed and stored in chunks of
+	 * {@link Constants#CSV_IMPORT_CHUNK_SIZE} lines, each one committed in its own
+	 * transaction, so the memory used does not depend on the size of the file.
 	 * </p>
 	 * 
 	 * <p>
@@ -72,19 +82,17 @@ public class IProjectorParserImpl implements IProjectorParser {
 	 * <li>Reads and skips the first line (header).</li>
 	 * <li>Processes each line, extracting the projector model, classroom, and
 	 * floor.</li>
-	 * <li>Ensures the floor exists, creating it if necessary.</li>
-	 * <li>Ensures the classroom exists, linking it to the correct floor.</li>
-	 * <li>Ensures the projector model exists.</li>
-	 * <li>Checks for an existing projector entry; creates and saves if absent.</li>
+	 * <li>Reports malformed lines without aborting the file.</li>
+	 * <li>Checks which projectors of the chunk already exist with a single
+	 * query, matching the classrooms ignoring case as the database does.</li>
+	 * <li>Inserts the new projectors of the chunk in a JDBC batch and commits.</li>
 	 * </ul>
 	 * 
 	 * @param scanner The {@link Scanner} instance reading the CSV file.
-	 * @return A summary indicating records saved and skipped.
-	 * @throws ProjectorServerException If an error occurs during parsing or
-	 *                                  database operations.
+	 * @return A summary indicating records saved, skipped and lines with errors.
+	 * @throws ProjectorServerException If the file is empty.
 	 */
 	@Override
-	@Transactional
 	public String parseProjectors(Scanner scanner) throws ProjectorServerException {
 
 		log.debug("Projector parsing process initiated.");
@@ -95,74 +103,54 @@ public class IProjectorParserImpl implements IProjectorParser {
 			throw new ProjectorServerException(492, "Empty CSV file received in parseProjectors() method.");
 		}
 
+		return this.csvChunkImporter.importLines(scanner, "PROJECTORS", IProjectorParserImpl::parseLine,
+				projector -> KeyUtils.normalize(projector.getClassroom()),
+				classrooms -> this.projectorRepository.findAllById(classrooms).stream()
+						.map(projector -> KeyUtils.normalize(projector.getClassroom())).collect(Collectors.toSet()),
+				() -> {
+					// Reload the in-memory registry once the chunk is committed.
+					this.projectorRegistry.invalidate();
+					this.generalOverviewSnapshot.invalidate();
+				});
+	}
+
+	/**
+	 * Parses and validates a line of the projectors CSV file.
+	 * 
+	 * @param line       The raw line.
+	 * @param recordLine The number of the line, used in the error messages.
+	 * @return A new, not persisted, projector in OFF status.
+	 * @throws ProjectorServerException If the line is malformed or has blank
+	 *                                  values.
+	 */
+	static Projector parseLine(String line, int recordLine) throws ProjectorServerException {
+
 		String message;
-		int recordsSaved = 0;
-		int recordLine = 0;
-		int recordsSkipped = 0;
-		List<Projector> projectorsList = new ArrayList<>();
-
-		// Skip the first line (assumed to be headers)
-		scanner.nextLine();
-
-		// Process each line in the CSV file
-		while (scanner.hasNextLine()) {
-			log.debug("---------------------------- PROJECTOR ENTITY " + recordLine
-					+ " -------------------------------------------");
-
-			recordLine++;
-
-			// Read and split the CSV line
-			String[] csvFields = scanner.nextLine().split(Constants.CSV_DELIMITER);
-
-			if (csvFields.length != 3) {
-				message = "ERROR: Malformed line in the Projectors CSV file in line " + recordLine + ".";
-				log.error(message);
-				throw new ProjectorServerException(499, message);
-			}
-
-			String modelName = csvFields[0].trim();
-			String classroomName = csvFields[1].trim();
-			String floorName = csvFields[2].trim();
-
-			// If the current line is not exactly 3 fields long, throw exception.
-			if (modelName.isBlank() || classroomName.isBlank() || floorName.isBlank()) {
-				message = "ERROR: Blank or empty value detected in the Projectors CSV file in line " + recordLine + ".";
-				log.error(message);
-				throw new ProjectorServerException(499, message);
-			}
-
-			// Check if projector in already exists...
-			Optional<Projector> projectorOptional = this.projectorRepository.findById(classroomName);
-
-			if (projectorOptional.isPresent()) {
-				log.debug("Projector in classroom '{}' already exists in the database. Skipping record.",
-						classroomName);
-				recordsSkipped++;
-				// End iteration.
-				continue;
-			}
-			// if doesn't exists: create and save a new projector entry
-			log.debug("Projector in classroom '{}' not present in the database. Saving record now.", classroomName);
-			Projector newProjector = new Projector();
-			newProjector.setClassroom(classroomName);
-			newProjector.setModel(modelName);
-			newProjector.setFloor(floorName);
-			newProjector.setStatus(Constants.PROJECTOR_OFF);
-
-			// add to list to save.
-			projectorsList.add(newProjector);
-
-			recordsSaved++;
-			log.debug("Projector unit with model '{}' in classroom '{}' successfully added to save list.", modelName,
-					classroomName);
+
+		// Read and split the CSV line
+		String[] csvFields = line.split(Constants.CSV_DELIMITER);
+
+		if (csvFields.length != 3) {
+			message = "ERROR: Malformed line in the Projectors CSV file in line " + recordLine + ".";
+			log.error(message);
+			throw new ProjectorServerException(499, message);
 		}
 
-		this.projectorRepository.saveAllAndFlush(projectorsList);
+		String modelName = csvFields[0].trim();
+		String classroomName = csvFields[1].trim();
+		String floorName = csvFields[2].trim();
+
+		if (modelName.isBlank() || classroomName.isBlank() || floorName.isBlank()) {
+			message = "ERROR: Blank or empty value detected in the Projectors CSV file in line " + recordLine + ".";
+			log.error(message);
+			throw new ProjectorServerException(499, message);
+		}
 
-		message = "PROJECTORS: Records saved: " + recordsSaved + " - Records skipped: " + recordsSkipped;
-		
-		log.info(message);
-		
-		return message;
+		Projector newProjector = new Projector();
+		newProjector.setClassroom(classroomName);
+		newProjector.setModel(modelName);
+		newProjector.setFloor(floorName);
+		newProjector.setStatus(Constants.PROJECTOR_OFF);
+		return newProjector;
 	}
 }
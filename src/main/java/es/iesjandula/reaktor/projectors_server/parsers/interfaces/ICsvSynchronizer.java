@@ -0,0 +1,42 @@
+package es.iesjandula.reaktor.projectors_server.parsers.interfaces;
+
+import java.util.Scanner;
+
+import es.iesjandula.reaktor.projectors_server.dtos.CsvSyncResultDto;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+
+/**
+ * Defines the contract for synchronizing the projectors and commands tables
+ * with an uploaded CSV file.
+ * <p>
+ * Unlike {@link IProjectorParser} and {@link ICommandParser}, which only add
+ * the records that do not exist yet, a synchronization makes the table match
+ * the file: new records are inserted, changed records are updated and records
+ * missing from the file are deleted together with their server events.
+ * </p>
+ * <p>
+ * The files use the same CSV format as the regular import.
+ * </p>
+ */
+public interface ICsvSynchronizer
+{
+	/**
+	 * Synchronizes the projectors table with the provided projectors CSV file.
+	 * 
+	 * @param scanner The {@link Scanner} reading the projectors CSV file.
+	 * @param dryRun  If true, the differences are returned without being applied.
+	 * @return The differences found and whether they were applied.
+	 * @throws ProjectorServerException If the file is empty or has no records.
+	 */
+	public CsvSyncResultDto synchronizeProjectors(Scanner scanner, boolean dryRun) throws ProjectorServerException;
+
+	/**
+	 * Synchronizes the commands table with the provided commands CSV file.
+	 * 
+	 * @param scanner The {@link Scanner} reading the commands CSV file.
+	 * @param dryRun  If true, the differences are returned without being applied.
+	 * @return The differences found and whether they were applied.
+	 * @throws ProjectorServerException If the file is empty or has no records.
+	 */
+	public CsvSyncResultDto synchronizeCommands(Scanner scanner, boolean dryRun) throws ProjectorServerException;
+}
@@ -1,5 +1,6 @@
 package es.iesjandula.reaktor.projectors_server.repositories;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,6 +40,22 @@ public interface ICommandRepository extends JpaRepository<Command, CommandId>
 	""")
 	int deleteCommandsByActions(@Param("actionNames") List<String> actionNames);
 
+	/**
+	 * Deletes the given actions of a model in a single statement. Their server
+	 * events must be deleted first.
+	 *
+	 * @param modelName the model of the commands
+	 * @param actionNames the actions to delete
+	 * @return the number of deleted commands
+	 */
+	@Modifying
+	@Transactional
+	@Query("""
+	    DELETE FROM Command c WHERE c.modelName = :modelName AND c.action IN :actionNames
+	""")
+	int deleteCommandsByModelNameAndActions(@Param("modelName") String modelName,
+			@Param("actionNames") Collection<String> actionNames);
+
 
 	@Query("""
 			SELECT COUNT(c) > 0 FROM Command c WHERE c.action = :actionName
@@ -67,6 +84,8 @@ public interface ICommandRepository extends JpaRepository<Command, CommandId>
 	
 	Optional<Command> findByModelNameAndAction(String modelName, String action);
 
+	List<Command> findByActionAndModelNameIn(String action, Collection<String> modelNames);
+
 	// ---------------------------- MODEL QUERIES ----------------------------
 
 	@Query("""
@@ -119,5 +138,12 @@ public interface ICommandRepository extends JpaRepository<Command, CommandId>
 	Page<CommandDto> findAllCommandsPage(Pageable pageable, @Param("modelName") String modelName,
 			@Param("action") String action);
 
+	@Query("""
+			SELECT new es.iesjandula.reaktor.projectors_server.dtos.CommandDto(
+			c.modelName, c.action, c.command )
+			FROM Command c
+			""")
+	List<CommandDto> findAllCommandsAsDto();
+
 	/// TODO: Investigate about JPQL Clause -> COALESCE()
 }
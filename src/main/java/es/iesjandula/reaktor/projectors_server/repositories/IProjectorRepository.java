@@ -1,5 +1,6 @@
 package es.iesjandula.reaktor.projectors_server.repositories;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -14,6 +15,7 @@ import es.iesjandula.reaktor.projectors_server.dtos.FloorDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ProjectorDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
 import es.iesjandula.reaktor.projectors_server.entities.Projector;
+import jakarta.transaction.Transactional;
 
 /**
  * Repository interface for managing Projector entities.
@@ -154,10 +156,150 @@ public interface IProjectorRepository extends JpaRepository<Projector, String> {
     	    """)
     	public long countFloors();
 
+    /**
+     * Counts the models, actions, commands, projectors, floors and classrooms with
+     * a single statement: one aggregate over each table.
+     * 
+     * @return the counts of the general overview
+     */
+    @Query(value = """
+    		SELECT c.number_of_models AS numberOfModels,
+    		    c.number_of_actions AS numberOfActions,
+    		    c.number_of_commands AS numberOfCommands,
+    		    p.number_of_projectors AS numberOfProjectors,
+    		    p.number_of_floors AS numberOfFloors,
+    		    p.number_of_classrooms AS numberOfClassrooms
+    		FROM (SELECT COUNT(DISTINCT model_name) AS number_of_models,
+    		          COUNT(DISTINCT action) AS number_of_actions,
+    		          COUNT(*) AS number_of_commands
+    		      FROM command) c
+    		CROSS JOIN (SELECT COUNT(*) AS number_of_projectors,
+    		          COUNT(DISTINCT floor) AS number_of_floors,
+    		          COUNT(DISTINCT classroom) AS number_of_classrooms
+    		      FROM projector) p
+    		""", nativeQuery = true)
+    public GeneralCountOverviewView findGeneralCountOverview();
+
+    /**
+     * Row returned by {@link IProjectorRepository#findGeneralCountOverview()}.
+     */
+    public interface GeneralCountOverviewView
+    {
+    	Long getNumberOfModels();
+
+    	Long getNumberOfActions();
+
+    	Long getNumberOfCommands();
+
+    	Long getNumberOfProjectors();
+
+    	Long getNumberOfFloors();
+
+    	Long getNumberOfClassrooms();
+    }
+
+
+    /**
+     * Retrieves every projector as a ProjectorInfoDto, used to load the in-memory projector registry.
+     * 
+     * @return a list with the model, classroom, floor and status of every projector
+     */
+    @Query("""
+            SELECT new es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto( 
+                pro.model, 
+                pro.classroom,
+                pro.floor,
+                pro.status
+            ) 
+            FROM Projector pro 
+        """)
+    public List<ProjectorInfoDto> findAllProjectorsAsDto();
+
+    /**
+     * Sets the same status on every projector of the given classrooms in a single statement.
+     * Only the projectors still in the expected status are updated, so a status written by
+     * another operation in the meantime is never overwritten.
+     * 
+     * @param classrooms the classrooms of the projectors
+     * @param currentStatus the status the projectors are expected to be in, or null to skip the check
+     * @param status the new status of the projectors
+     * @return the number of updated projectors
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+    		UPDATE Projector pro
+    		SET pro.status = :status
+    		WHERE pro.classroom IN :classrooms
+    		AND (:currentStatus IS NULL OR pro.status = :currentStatus)
+    		""")
+    public int updateProjectorsStatus(@Param("classrooms") Collection<String> classrooms,
+    		@Param("currentStatus") String currentStatus, @Param("status") String status);
+
+    /**
+     * Counts the projectors matching a fan-out selector that have a command for the given action.
+     * The rows are locked in share mode, so they cannot change until the events are created.
+     * 
+     * @param action the action of the events
+     * @param floor the floor filter (can be null)
+     * @param model the model filter (can be null)
+     * @param status the status filter (can be null)
+     * @return the number of projectors that will receive an event
+     */
+    @Query(value = """
+    		SELECT COUNT(*)
+    		FROM projector p
+    		JOIN command c ON c.model_name = p.model AND c.action = :action
+    		WHERE (:floor IS NULL OR p.floor = :floor)
+    		AND (:model IS NULL OR p.model = :model)
+    		AND (:status IS NULL OR p.status = :status)
+    		FOR SHARE
+    		""", nativeQuery = true)
+    public long countFanOutProjectors(@Param("action") String action, @Param("floor") String floor,
+    		@Param("model") String model, @Param("status") String status);
+
+    /**
+     * Sets a new status on the projectors matching a fan-out selector whose current status is one of the given ones.
+     * 
+     * @param action the action of the events
+     * @param floor the floor filter (can be null)
+     * @param model the model filter (can be null)
+     * @param status the status filter (can be null)
+     * @param fromStatuses the current statuses that change
+     * @param newStatus the new status
+     * @return the number of updated projectors
+     */
+    @Modifying
+    @Query(value = """
+    		UPDATE projector p
+    		JOIN command c ON c.model_name = p.model AND c.action = :action
+    		SET p.status = :newStatus
+    		WHERE (:floor IS NULL OR p.floor = :floor)
+    		AND (:model IS NULL OR p.model = :model)
+    		AND (:status IS NULL OR p.status = :status)
+    		AND p.status IN (:fromStatuses)
+    		""", nativeQuery = true)
+    public int updateFanOutProjectorsStatus(@Param("action") String action, @Param("floor") String floor,
+    		@Param("model") String model, @Param("status") String status,
+    		@Param("fromStatuses") List<String> fromStatuses, @Param("newStatus") String newStatus);
 
     @Modifying
     @Query("""
     		DELETE FROM Projector
     		""")
     public int deleteAllRecords();
+
+    /**
+     * Deletes the projectors of the given classrooms in a single statement.
+     * Their server events must be deleted first.
+     * 
+     * @param classrooms the classrooms of the projectors
+     * @return the number of deleted projectors
+     */
+    @Modifying
+    @Query("""
+    		DELETE FROM Projector pro
+    		WHERE pro.classroom IN :classrooms
+    		""")
+    public int deleteProjectorsByClassrooms(@Param("classrooms") Collection<String> classrooms);
 }
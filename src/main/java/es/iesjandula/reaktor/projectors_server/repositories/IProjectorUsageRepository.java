@@ -0,0 +1,44 @@
+package es.iesjandula.reaktor.projectors_server.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import es.iesjandula.reaktor.projectors_server.entities.ProjectorUsage;
+import jakarta.transaction.Transactional;
+
+@Repository
+public interface IProjectorUsageRepository extends JpaRepository<ProjectorUsage, String> {
+
+	/**
+	 * Writes the accumulated usage of a projector, inserting its row the first
+	 * time. Nothing is written if the projector no longer exists.
+	 * 
+	 * @param classroom   the classroom of the projector
+	 * @param lampMillis  the milliseconds the lamp has been on
+	 * @param lampOns     the number of times the lamp has turned on
+	 * @param lampOn      whether the lamp is on
+	 * @param lastReport  the time of the last lamp status report
+	 * @return 0 if the projector no longer exists
+	 */
+	@Modifying
+	@Transactional
+	@Query(value = """
+			INSERT INTO projector_usage (classroom, lamp_millis, lamp_ons, lamp_on, last_report)
+			SELECT p.classroom, :lampMillis, :lampOns, :lampOn, :lastReport
+			FROM projector p
+			WHERE p.classroom = :classroom
+			ON DUPLICATE KEY UPDATE
+			    lamp_millis = :lampMillis,
+			    lamp_ons = :lampOns,
+			    lamp_on = :lampOn,
+			    last_report = :lastReport
+			""", nativeQuery = true)
+	public int upsertUsage(@Param("classroom") String classroom, @Param("lampMillis") long lampMillis,
+			@Param("lampOns") long lampOns, @Param("lampOn") boolean lampOn,
+			@Param("lastReport") LocalDateTime lastReport);
+}
@@ -0,0 +1,91 @@
+package es.iesjandula.reaktor.projectors_server.repositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventDailyRollup;
+
+@Repository
+public interface IServerEventDailyRollupRepository extends JpaRepository<ServerEventDailyRollup, Long> {
+
+	/**
+	 * Adds the server events created in the given time range to the daily
+	 * rollup, with a single grouped read of the history. The range only touches
+	 * the history partitions it covers.
+	 * 
+	 * @param from the inclusive lower bound of the creation time
+	 * @param to   the exclusive upper bound of the creation time
+	 * @return the number of affected rollup rows, as reported by MySQL
+	 */
+	@Modifying
+	@Query(value = """
+			INSERT INTO server_event_daily_rollup
+			    (event_day, classroom, floor, model_name, action, `user`, action_status, dimensions_hash, event_count)
+			SELECT g.event_day, g.classroom, g.floor, g.model_name, g.action, g.user, g.action_status,
+			    UNHEX(MD5(CONCAT_WS(CHAR(31), g.classroom, g.floor, g.model_name, g.action, g.user, g.action_status))),
+			    g.event_count
+			FROM (
+			    SELECT DATE(seh.date_time) AS event_day,
+			        COALESCE(seh.classroom, '') AS classroom,
+			        COALESCE(seh.floor, '') AS floor,
+			        COALESCE(seh.model_name, '') AS model_name,
+			        COALESCE(seh.action, '') AS action,
+			        COALESCE(seh.`user`, '') AS `user`,
+			        COALESCE(seh.action_status, '') AS action_status,
+			        COUNT(*) AS event_count
+			    FROM server_event_history seh
+			    WHERE seh.date_time >= :from AND seh.date_time < :to
+			    GROUP BY DATE(seh.date_time), COALESCE(seh.classroom, ''), COALESCE(seh.floor, ''),
+			        COALESCE(seh.model_name, ''), COALESCE(seh.action, ''), COALESCE(seh.`user`, ''),
+			        COALESCE(seh.action_status, '')
+			) AS g
+			ON DUPLICATE KEY UPDATE event_count = server_event_daily_rollup.event_count + g.event_count
+			""", nativeQuery = true)
+	public int rollUpServerEventHistory(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+	/**
+	 * Finds the creation time of the first server event created at or after the
+	 * given time, so the rollup can skip the days without events.
+	 * 
+	 * @param from the inclusive lower bound of the creation time
+	 * @return the creation time of the first event, or an empty optional if there
+	 *         are none
+	 */
+	@Query("SELECT MIN(seh.dateTime) FROM ServerEventHistory seh WHERE seh.dateTime >= :from")
+	public Optional<LocalDateTime> findFirstEventDateTimeFrom(@Param("from") LocalDateTime from);
+
+	/**
+	 * Finds the days of the rollup that still count events in a status that can
+	 * change, so they can be aggregated again.
+	 * 
+	 * @param statuses the statuses that can still change
+	 * @param since    the first day to look at
+	 * @param pageable the maximum number of days returned
+	 * @return the days, oldest first
+	 */
+	@Query("SELECT DISTINCT r.eventDay FROM ServerEventDailyRollup r "
+			+ "WHERE r.actionStatus IN :statuses AND r.eventDay >= :since ORDER BY r.eventDay")
+	public List<LocalDate> findDaysWithStatuses(@Param("statuses") Collection<String> statuses,
+			@Param("since") LocalDate since, Pageable pageable);
+
+	/**
+	 * Removes the rollup of a day before aggregating it again.
+	 * 
+	 * @param eventDay the day
+	 * @return the number of rollup rows removed
+	 */
+	@Modifying
+	@Query("DELETE FROM ServerEventDailyRollup r WHERE r.eventDay = :eventDay")
+	public int deleteByEventDay(@Param("eventDay") LocalDate eventDay);
+}
@@ -0,0 +1,69 @@
+package es.iesjandula.reaktor.projectors_server.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import es.iesjandula.reaktor.projectors_server.dtos.EventFilterObject;
+import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
+
+/**
+ * Queries of the server event history built from the filters actually
+ * informed, implemented with the Criteria API.
+ */
+public interface IServerEventHistoryQueries
+{
+	/**
+	 * Retrieves a page of the server events matching the filters, most recent
+	 * first. Only the informed filters are part of the query: the event ID,
+	 * classroom, floor, model, action, user and status must match exactly, the
+	 * creation time selects the events of its day and the date range is applied
+	 * on the creation time.
+	 *
+	 * @param filter   the filters of the events
+	 * @param pageable pagination information
+	 * @return a page of table-formatted server event details
+	 */
+	public Page<TableServerEventDto> findFilteredServerEventDtosPage(EventFilterObject filter, Pageable pageable);
+
+	/**
+	 * Retrieves the server events matching the same filters as
+	 * {@link #findFilteredServerEventDtosPage} that come right after the
+	 * given position in the order of the events table (most recent first, then
+	 * highest ID first). The position is a seek condition on
+	 * {@code (dateTime, eventId)}, so the cost of a page does not grow with its
+	 * depth.
+	 *
+	 * @param filter          the filters of the events
+	 * @param afterDateTime   creation time of the last event already read, or
+	 *                        null to start from the most recent one
+	 * @param afterEventId    ID of the last event already read, or null to start
+	 *                        from the most recent one
+	 * @param limit           the maximum number of events to retrieve
+	 * @return the events, in order
+	 */
+	public List<TableServerEventDto> findFilteredServerEventDtosAfter(EventFilterObject filter,
+			LocalDateTime afterDateTime, Long afterEventId, int limit);
+
+	/**
+	 * Streams the server events matching the same filters as
+	 * {@link #findFilteredServerEventDtosPage}, oldest first. The rows are read
+	 * through a forward-only cursor as the stream is consumed, so no result list
+	 * is held in memory. Must be consumed and closed inside a transaction.
+	 *
+	 * @param filter the filters of the events
+	 * @return the events, in order
+	 */
+	public Stream<TableServerEventDto> streamFilteredServerEventDtos(EventFilterObject filter);
+
+	/**
+	 * Counts the server events matching the filters.
+	 *
+	 * @param filter the filters of the events
+	 * @return the number of events
+	 */
+	public long countFilteredServerEvents(EventFilterObject filter);
+}
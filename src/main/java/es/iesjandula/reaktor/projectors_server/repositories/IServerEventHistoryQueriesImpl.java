@@ -0,0 +1,194 @@
+package es.iesjandula.reaktor.projectors_server.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import es.iesjandula.reaktor.projectors_server.dtos.EventFilterObject;
+import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Criteria implementation of {@link IServerEventHistoryQueries}, picked up by
+ * Spring Data as a fragment of {@link IServerEventHistoryRepository}.
+ */
+public class IServerEventHistoryQueriesImpl implements IServerEventHistoryQueries
+{
+	/**
+	 * Fetch size that makes MySQL Connector/J stream the rows one by one instead
+	 * of reading the whole result set into memory.
+	 */
+	private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public List<TableServerEventDto> findFilteredServerEventDtosAfter(EventFilterObject filter,
+			LocalDateTime afterDateTime, Long afterEventId, int limit)
+	{
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<TableServerEventDto> query = criteriaBuilder.createQuery(TableServerEventDto.class);
+		Root<ServerEventHistory> serverEvent = query.from(ServerEventHistory.class);
+
+		Path<LocalDateTime> dateTime = serverEvent.get("dateTime");
+		Path<Long> eventId = serverEvent.get("eventId");
+
+		List<Predicate> predicates = this.buildPredicates(criteriaBuilder, serverEvent, filter);
+
+		if (afterDateTime != null && afterEventId != null) {
+			// (dateTime, eventId) < (afterDateTime, afterEventId), spelled out for the index range scan.
+			predicates.add(criteriaBuilder.or(
+					criteriaBuilder.lessThan(dateTime, afterDateTime),
+					criteriaBuilder.and(criteriaBuilder.equal(dateTime, afterDateTime),
+							criteriaBuilder.lessThan(eventId, afterEventId))));
+		}
+
+		query.select(this.selectTableServerEventDto(criteriaBuilder, serverEvent))
+				.where(predicates.toArray(new Predicate[0]))
+				.orderBy(criteriaBuilder.desc(dateTime), criteriaBuilder.desc(eventId));
+
+		return this.entityManager.createQuery(query).setMaxResults(limit).getResultList();
+	}
+
+	@Override
+	public Page<TableServerEventDto> findFilteredServerEventDtosPage(EventFilterObject filter, Pageable pageable)
+	{
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<TableServerEventDto> query = criteriaBuilder.createQuery(TableServerEventDto.class);
+		Root<ServerEventHistory> serverEvent = query.from(ServerEventHistory.class);
+
+		query.select(this.selectTableServerEventDto(criteriaBuilder, serverEvent))
+				.where(this.buildPredicates(criteriaBuilder, serverEvent, filter).toArray(new Predicate[0]))
+				.orderBy(criteriaBuilder.desc(serverEvent.get("dateTime")),
+						criteriaBuilder.desc(serverEvent.get("eventId")));
+
+		TypedQuery<TableServerEventDto> typedQuery = this.entityManager.createQuery(query);
+		if (pageable.isPaged()) {
+			typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+		}
+
+		// The count is skipped when the page alone tells the total, e.g. a short first page.
+		return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable,
+				() -> this.countFilteredServerEvents(filter));
+	}
+
+	@Override
+	public Stream<TableServerEventDto> streamFilteredServerEventDtos(EventFilterObject filter)
+	{
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<TableServerEventDto> query = criteriaBuilder.createQuery(TableServerEventDto.class);
+		Root<ServerEventHistory> serverEvent = query.from(ServerEventHistory.class);
+
+		query.select(this.selectTableServerEventDto(criteriaBuilder, serverEvent))
+				.where(this.buildPredicates(criteriaBuilder, serverEvent, filter).toArray(new Predicate[0]))
+				.orderBy(criteriaBuilder.asc(serverEvent.get("dateTime")),
+						criteriaBuilder.asc(serverEvent.get("eventId")));
+
+		return this.entityManager.createQuery(query)
+				.setHint(HibernateHints.HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+				.setHint(HibernateHints.HINT_READ_ONLY, true)
+				.getResultStream();
+	}
+
+	@Override
+	public long countFilteredServerEvents(EventFilterObject filter)
+	{
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+		Root<ServerEventHistory> serverEvent = query.from(ServerEventHistory.class);
+
+		query.select(criteriaBuilder.count(serverEvent))
+				.where(this.buildPredicates(criteriaBuilder, serverEvent, filter).toArray(new Predicate[0]));
+
+		return this.entityManager.createQuery(query).getSingleResult();
+	}
+
+	/**
+	 * Builds the projection of a history record into a row of the events table.
+	 *
+	 * @param criteriaBuilder The criteria builder.
+	 * @param serverEvent     The root of the query.
+	 * @return The selection of the table DTO.
+	 */
+	private CompoundSelection<TableServerEventDto> selectTableServerEventDto(CriteriaBuilder criteriaBuilder,
+			Root<ServerEventHistory> serverEvent)
+	{
+		return criteriaBuilder.construct(TableServerEventDto.class,
+				serverEvent.get("eventId"),
+				serverEvent.get("action"),
+				serverEvent.get("modelName"),
+				serverEvent.get("classroom"),
+				serverEvent.get("floor"),
+				serverEvent.get("user"),
+				serverEvent.get("dateTime"),
+				serverEvent.get("actionStatus"));
+	}
+
+	/**
+	 * Builds the restrictions of the informed filters, leaving out the empty ones
+	 * so that each combination of filters is a distinct query that MySQL can
+	 * serve from the matching index.
+	 *
+	 * @param criteriaBuilder The criteria builder.
+	 * @param serverEvent     The root of the query.
+	 * @param filter          The filters of the events.
+	 * @return The restrictions, to be combined with AND.
+	 */
+	private List<Predicate> buildPredicates(CriteriaBuilder criteriaBuilder, Root<ServerEventHistory> serverEvent,
+			EventFilterObject filter)
+	{
+		List<Predicate> predicates = new ArrayList<>();
+
+		if (filter.getEventId() != null) {
+			predicates.add(criteriaBuilder.equal(serverEvent.get("eventId"), filter.getEventId()));
+		}
+
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "classroom", filter.getClassroomName());
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "floor", filter.getFloorName());
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "modelName", filter.getModelName());
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "action", filter.getActionName());
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "user", filter.getUser());
+		this.addEqual(predicates, criteriaBuilder, serverEvent, "actionStatus", filter.getActionStatus());
+
+		Path<LocalDateTime> dateTime = serverEvent.get("dateTime");
+
+		// The creation time selects the whole day, as a range so that the date_time indexes are still usable.
+		if (filter.getDateTime() != null) {
+			LocalDateTime dayStart = filter.getDateTime().toLocalDate().atStartOfDay();
+			predicates.add(criteriaBuilder.greaterThanOrEqualTo(dateTime, dayStart));
+			predicates.add(criteriaBuilder.lessThan(dateTime, dayStart.plusDays(1)));
+		}
+		if (filter.getDateFrom() != null) {
+			predicates.add(criteriaBuilder.greaterThanOrEqualTo(dateTime, filter.getDateFrom()));
+		}
+		if (filter.getDateTo() != null) {
+			predicates.add(criteriaBuilder.lessThan(dateTime, filter.getDateTo()));
+		}
+
+		return predicates;
+	}
+
+	private void addEqual(List<Predicate> predicates, CriteriaBuilder criteriaBuilder,
+			Root<ServerEventHistory> serverEvent, String attribute, String value)
+	{
+		if (value != null && !value.isEmpty()) {
+			predicates.add(criteriaBuilder.equal(serverEvent.get(attribute), value));
+		}
+	}
+}
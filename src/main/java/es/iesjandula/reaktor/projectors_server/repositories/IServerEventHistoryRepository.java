@@ -1,19 +1,24 @@
 package es.iesjandula.reaktor.projectors_server.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
+import es.iesjandula.reaktor.projectors_server.dtos.EventStatusCountDto;
 import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
 
 @Repository
-public interface IServerEventHistoryRepository extends JpaRepository<ServerEventHistory, Long> {
+public interface IServerEventHistoryRepository extends JpaRepository<ServerEventHistory, Long>, IServerEventHistoryQueries {
 
 
 	/**
@@ -36,57 +41,193 @@ public interface IServerEventHistoryRepository extends JpaRepository<ServerEvent
 	public List<ServerEventHistory> findRecentPendingServerEventsByClassroom( String classroom );
 
 	/**
-	 * Retrieves a paginated list of table-formatted server event details with
-	 * optional filters. Filters can be applied for classroom, floor, model, and
-	 * action status.
+	 * Retrieves and locks (SELECT ... FOR UPDATE) the most recent server event of
+	 * a classroom in the given status. Concurrent claims of the same classroom
+	 * wait for the lock and then see the event already claimed.
 	 * 
-	 * @param pageable     pagination information
-	 * @param classroom    optional classroom name filter (can be null or empty)
-	 * @param floor        optional floor name filter (can be null or empty)
-	 * @param model        optional projector model filter (can be null or empty)
-	 * @param actionStatus optional action status filter (can be null or empty)
+	 * @param classroom    the classroom of the events
+	 * @param actionStatus the status of the event to retrieve
+	 * @return the most recent server event, if any
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	public Optional<ServerEventHistory> findFirstByClassroomAndActionStatusOrderByDateTimeDescEventIdDesc(
+			String classroom, String actionStatus);
+
+	/**
+	 * Retrieves and locks (SELECT ... FOR UPDATE) the server events of several
+	 * classrooms in the given status, most recent first. Used to claim the
+	 * events of a batch of classrooms with a single read.
+	 * 
+	 * @param classrooms   the classrooms of the events
+	 * @param actionStatus the status of the events to retrieve
+	 * @return the server events, most recent first
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("""
+			SELECT seh FROM ServerEventHistory seh
+			WHERE seh.classroom IN :classrooms
+			AND seh.actionStatus = :actionStatus
+			ORDER BY seh.dateTime DESC, seh.eventId DESC
+			""")
+	public List<ServerEventHistory> findServerEventsByClassroomsAndStatusForUpdate(
+			@Param("classrooms") Collection<String> classrooms, @Param("actionStatus") String actionStatus);
+
+	/**
+	 * Moves every server event of a classroom from one status to another in a
+	 * single statement, except the given one.
+	 * 
+	 * @param classroom       the classroom of the events
+	 * @param excludedEventId the ID of the event to leave untouched
+	 * @param currentStatus   the status the events are expected to be in
+	 * @param newStatus       the status to assign
+	 * @return the number of updated events
+	 */
+	@Modifying
+	@Transactional
+	@Query("""
+			UPDATE ServerEventHistory seh
+			SET seh.actionStatus = :newStatus
+			WHERE seh.classroom = :classroom
+			AND seh.actionStatus = :currentStatus
+			AND seh.eventId <> :excludedEventId
+			""")
+	public int updateOtherServerEventsStatusByClassroom(@Param("classroom") String classroom,
+			@Param("excludedEventId") Long excludedEventId, @Param("currentStatus") String currentStatus,
+			@Param("newStatus") String newStatus);
+
+	/**
+	 * Retrieves every server event in the given status, oldest first. Used to
+	 * rebuild the in-memory dispatch queue on startup.
 	 * 
-	 * @return a paginated list of table-formatted server event details
+	 * @param actionStatus the status of the events to retrieve
+	 * @return the list of server events ordered by date and ID
 	 */
 	@Query("""
-			SELECT new es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto(
-			se.eventId,
-			se.action,
-			se.modelName,
-			se.classroom,
-			se.floor,
-			se.user,
-			se.dateTime,
-			se.actionStatus
-			)
-			FROM ServerEventHistory se
-			WHERE (:classroom = '' OR :classroom IS NULL OR se.classroom = :classroom)
-			AND (:floor = '' OR :floor IS NULL OR se.floor = :floor)
-			AND (:modelName = '' OR :modelName IS NULL OR se.modelName = :modelName)
-			AND (:actionStatus = '' OR :actionStatus IS NULL OR se.actionStatus = :actionStatus)
-			ORDER BY se.dateTime DESC
+			SELECT seh FROM ServerEventHistory seh
+			WHERE seh.actionStatus = :actionStatus
+			ORDER BY seh.dateTime ASC, seh.eventId ASC
 			""")
-	public Page<TableServerEventDto> getFilteredServerEventDtosPage(
-			Pageable pageable, 
-			@Param("classroom") String classroom,
-			@Param("floor") String floor, 
-			@Param("modelName") String modelName, 
-			@Param("actionStatus") String actionStatus
-			);
-		
+	public List<ServerEventHistory> findServerEventsByStatusOldestFirst(@Param("actionStatus") String actionStatus);
+
+	/**
+	 * Moves a set of server events from one status to another in a single
+	 * statement. Events that are no longer in the expected current status (for
+	 * example, already acknowledged by the agent) are left untouched.
+	 * 
+	 * @param eventIds      the IDs of the events to update
+	 * @param currentStatus the status the events are expected to be in
+	 * @param newStatus     the status to assign
+	 * @return the number of updated events
+	 */
+	@Modifying
+	@Transactional
+	@Query("""
+			UPDATE ServerEventHistory seh
+			SET seh.actionStatus = :newStatus
+			WHERE seh.eventId IN :eventIds
+			AND seh.actionStatus = :currentStatus
+			""")
+	public int updateServerEventsStatus(@Param("eventIds") Collection<Long> eventIds,
+			@Param("currentStatus") String currentStatus, @Param("newStatus") String newStatus);
+
+	/**
+	 * Reads and locks the next value of the ID sequence table used by Hibernate
+	 * for {@link ServerEventHistory}.
+	 * 
+	 * @return the current next value of the sequence
+	 */
+	@Query(value = "SELECT next_val FROM server_event_history_seq FOR UPDATE", nativeQuery = true)
+	public Long findSequenceNextValueForUpdate();
+
+	/**
+	 * Moves the ID sequence table of {@link ServerEventHistory} to a new value.
+	 * 
+	 * @param nextValue the new next value of the sequence
+	 * @return the number of updated rows
+	 */
+	@Modifying
+	@Query(value = "UPDATE server_event_history_seq SET next_val = :nextValue", nativeQuery = true)
+	public int updateSequenceNextValue(@Param("nextValue") long nextValue);
+
+	/**
+	 * History counterpart of
+	 * {@link IServerEventRepository#insertFanOutServerEvents}: creates in a single
+	 * statement one history record for every projector matching the selector
+	 * that has a command for the given action.
+	 * 
+	 * @param firstEventId     the ID of the first record created
+	 * @param action           the action of the events
+	 * @param floor            selects the projectors of a floor (can be null)
+	 * @param model            selects the projectors of a model (can be null)
+	 * @param status           selects the projectors in a status (can be null)
+	 * @param checkStatus      whether projectors already in the target status get
+	 *                         an executed event instead of a pending one
+	 * @param executedStatuses the projector statuses considered already executed
+	 * @param executed         the status of the already executed events
+	 * @param pending          the status of the rest of events
+	 * @param dateTime         the creation date of the events
+	 * @param user             the user creating the events
+	 * @return the number of created records
+	 */
+	@Modifying
+	@Query(value = """
+			INSERT INTO server_event_history (event_id, action, action_status, classroom, command, date_time, floor,
+			    model_name, `user`)
+			SELECT :firstEventId - 1 + ROW_NUMBER() OVER (ORDER BY p.classroom), c.action,
+			    CASE WHEN :checkStatus = TRUE AND p.status IN (:executedStatuses) THEN :executed ELSE :pending END,
+			    p.classroom, c.command, :dateTime, p.floor, c.model_name, :user
+			FROM projector p
+			JOIN command c ON c.model_name = p.model AND c.action = :action
+			WHERE (:floor IS NULL OR p.floor = :floor)
+			AND (:model IS NULL OR p.model = :model)
+			AND (:status IS NULL OR p.status = :status)
+			""", nativeQuery = true)
+	public int insertFanOutServerEventHistory(@Param("firstEventId") long firstEventId, @Param("action") String action,
+			@Param("floor") String floor, @Param("model") String model, @Param("status") String status,
+			@Param("checkStatus") boolean checkStatus, @Param("executedStatuses") List<String> executedStatuses,
+			@Param("executed") String executed, @Param("pending") String pending,
+			@Param("dateTime") LocalDateTime dateTime, @Param("user") String user);
 
 	/**
-	 * Retrieves the count of server events for a specific action status.
+	 * Retrieves the server events within a range of IDs.
+	 * 
+	 * @param firstEventId the first ID of the range
+	 * @param lastEventId  the last ID of the range
+	 * @return the server events of the range
+	 */
+	public List<ServerEventHistory> findByEventIdBetween(Long firstEventId, Long lastEventId);
+
+	/**
+	 * Retrieves the count of server events for a specific action status,
+	 * optionally restricted to a creation time range (and so to the monthly
+	 * partitions it touches).
 	 * 
 	 * @param actionStatus the action status to filter the events
+	 * @param dateFrom     optional inclusive lower bound of the creation time (can be null)
+	 * @param dateTo       optional exclusive upper bound of the creation time (can be null)
 	 * @return the count of events matching the action status
 	 */
 	@Query("""
 			SELECT COUNT(*)
 			FROM ServerEventHistory seh
 			WHERE seh.actionStatus LIKE :actionStatus
+			AND (:dateFrom IS NULL OR seh.dateTime >= :dateFrom)
+			AND (:dateTo IS NULL OR seh.dateTime < :dateTo)
+			""")
+	public Long countServerEventsByStatus(@Param("actionStatus") String actionStatus,
+			@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	/**
+	 * Counts the server events of every status with a single grouped query.
+	 * 
+	 * @return the number of events per status
+	 */
+	@Query("""
+			SELECT new es.iesjandula.reaktor.projectors_server.dtos.EventStatusCountDto(seh.actionStatus, COUNT(seh))
+			FROM ServerEventHistory seh
+			GROUP BY seh.actionStatus
 			""")
-	public Long countServerEventsByStatus(@Param("actionStatus") String actionStatus);
+	public List<EventStatusCountDto> countServerEventsGroupedByStatus();
 	
 
 }
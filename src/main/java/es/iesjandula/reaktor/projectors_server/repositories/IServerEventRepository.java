@@ -1,10 +1,13 @@
 package es.iesjandula.reaktor.projectors_server.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -37,4 +40,86 @@ public interface IServerEventRepository extends JpaRepository<ServerEvent, Long>
 	@Query("SELECT s FROM ServerEvent s WHERE s.command.modelName = :modelName AND s.command.action = :action")
 	List<ServerEvent> findByCommand(@Param("modelName") String modelName, @Param("action") String action);
 
+	/**
+	 * Deletes the server events of the projectors in the given classrooms in a
+	 * single statement.
+	 * 
+	 * @param classrooms the classrooms of the projectors
+	 * @return the number of deleted server events
+	 */
+	@Modifying
+	@Query("DELETE FROM ServerEvent s WHERE s.projector.classroom IN :classrooms")
+	int deleteByProjectorClassrooms(@Param("classrooms") Collection<String> classrooms);
+
+	/**
+	 * Deletes the server events of the given actions of a model in a single
+	 * statement.
+	 * 
+	 * @param modelName the model of the commands
+	 * @param actions the actions of the commands
+	 * @return the number of deleted server events
+	 */
+	@Modifying
+	@Query("DELETE FROM ServerEvent s WHERE s.command.modelName = :modelName AND s.command.action IN :actions")
+	int deleteByCommands(@Param("modelName") String modelName, @Param("actions") Collection<String> actions);
+
+	// ---------------------------- FAN-OUT QUERIES ----------------------------
+
+	/**
+	 * Reads and locks the next value of the ID sequence table used by Hibernate
+	 * for {@link ServerEvent}.
+	 * 
+	 * @return the current next value of the sequence
+	 */
+	@Query(value = "SELECT next_val FROM server_event_seq FOR UPDATE", nativeQuery = true)
+	Long findSequenceNextValueForUpdate();
+
+	/**
+	 * Moves the ID sequence table of {@link ServerEvent} to a new value.
+	 * 
+	 * @param nextValue the new next value of the sequence
+	 * @return the number of updated rows
+	 */
+	@Modifying
+	@Query(value = "UPDATE server_event_seq SET next_val = :nextValue", nativeQuery = true)
+	int updateSequenceNextValue(@Param("nextValue") long nextValue);
+
+	/**
+	 * Creates in a single statement one server event for every projector matching
+	 * the selector that has a command for the given action. The IDs are assigned
+	 * consecutively from {@code firstEventId}, ordered by classroom.
+	 * 
+	 * @param firstEventId     the ID of the first event created
+	 * @param action           the action of the events
+	 * @param floor            selects the projectors of a floor (can be null)
+	 * @param model            selects the projectors of a model (can be null)
+	 * @param status           selects the projectors in a status (can be null)
+	 * @param checkStatus      whether projectors already in the target status get
+	 *                         an executed event instead of a pending one
+	 * @param executedStatuses the projector statuses considered already executed
+	 * @param executed         the status of the already executed events
+	 * @param pending          the status of the rest of events
+	 * @param dateTime         the creation date of the events
+	 * @param user             the user creating the events
+	 * @return the number of created events
+	 */
+	@Modifying
+	@Query(value = """
+			INSERT INTO server_event (event_id, action_status, date_time, `user`, command_action, command_model_name,
+			    projector_classroom)
+			SELECT :firstEventId - 1 + ROW_NUMBER() OVER (ORDER BY p.classroom),
+			    CASE WHEN :checkStatus = TRUE AND p.status IN (:executedStatuses) THEN :executed ELSE :pending END,
+			    :dateTime, :user, c.action, c.model_name, p.classroom
+			FROM projector p
+			JOIN command c ON c.model_name = p.model AND c.action = :action
+			WHERE (:floor IS NULL OR p.floor = :floor)
+			AND (:model IS NULL OR p.model = :model)
+			AND (:status IS NULL OR p.status = :status)
+			""", nativeQuery = true)
+	int insertFanOutServerEvents(@Param("firstEventId") long firstEventId, @Param("action") String action,
+			@Param("floor") String floor, @Param("model") String model, @Param("status") String status,
+			@Param("checkStatus") boolean checkStatus, @Param("executedStatuses") List<String> executedStatuses,
+			@Param("executed") String executed, @Param("pending") String pending,
+			@Param("dateTime") LocalDateTime dateTime, @Param("user") String user);
+
 }
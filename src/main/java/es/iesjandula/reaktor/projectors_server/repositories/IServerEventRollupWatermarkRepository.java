@@ -0,0 +1,27 @@
+package es.iesjandula.reaktor.projectors_server.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventRollupWatermark;
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface IServerEventRollupWatermarkRepository extends JpaRepository<ServerEventRollupWatermark, String> {
+
+	/**
+	 * Retrieves the watermark of a rollup, locked until the end of the
+	 * transaction so two instances never aggregate the same events.
+	 * 
+	 * @param rollupName the name of the rollup
+	 * @return the watermark, or an empty optional if the rollup does not exist
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT w FROM ServerEventRollupWatermark w WHERE w.rollupName = :rollupName")
+	public Optional<ServerEventRollupWatermark> findForUpdate(@Param("rollupName") String rollupName);
+}
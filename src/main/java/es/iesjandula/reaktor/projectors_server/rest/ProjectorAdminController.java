@@ -1,17 +1,26 @@
 package es.iesjandula.reaktor.projectors_server.rest;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,12 +33,18 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import es.iesjandula.reaktor.base.utils.BaseConstants;
 import es.iesjandula.reaktor.projectors_server.dtos.ActionDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandCatalogStatsDto;
 import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CsvSyncResponseDto;
+import es.iesjandula.reaktor.projectors_server.dtos.EventFilterObject;
+import es.iesjandula.reaktor.projectors_server.dtos.EventRollupFilterDto;
 import es.iesjandula.reaktor.projectors_server.dtos.GeneralCountOverviewDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorUsageDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
 import es.iesjandula.reaktor.projectors_server.dtos.RichResponseDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ServerEventOverviewDto;
@@ -38,11 +53,20 @@ import es.iesjandula.reaktor.projectors_server.entities.Projector;
 import es.iesjandula.reaktor.projectors_server.entities.ServerEvent;
 import es.iesjandula.reaktor.projectors_server.entities.ids.CommandId;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICommandParser;
+import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICsvSynchronizer;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.IProjectorParser;
 import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRepository;
+import es.iesjandula.reaktor.projectors_server.services.CommandCatalog;
+import es.iesjandula.reaktor.projectors_server.services.GeneralOverviewSnapshot;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorStatusBuffer;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorUsageAccumulator;
+import es.iesjandula.reaktor.projectors_server.services.ServerEventHistoryExporter;
+import es.iesjandula.reaktor.projectors_server.services.ServerEventRollupService;
+import es.iesjandula.reaktor.projectors_server.services.ServerEventStatusCounters;
 import es.iesjandula.reaktor.projectors_server.utils.Constants;
 import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
 import lombok.extern.slf4j.Slf4j;
@@ -58,6 +82,9 @@ public class ProjectorAdminController {
 	@Autowired
 	IProjectorParser projectorParser;
 
+	@Autowired
+	ICsvSynchronizer csvSynchronizer;
+
 	@Autowired
 	IServerEventRepository serverEventRepository;
 
@@ -69,6 +96,34 @@ public class ProjectorAdminController {
 	
 	@Autowired
 	IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	CommandCatalog commandCatalog;
+
+	@Autowired
+	ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	ProjectorStatusBuffer projectorStatusBuffer;
+
+	@Autowired
+	GeneralOverviewSnapshot generalOverviewSnapshot;
+
+	@Autowired
+	ServerEventRollupService serverEventRollupService;
+
+	@Autowired
+	ServerEventStatusCounters serverEventStatusCounters;
+
+	@Autowired
+	ServerEventHistoryExporter serverEventHistoryExporter;
+
+	@Autowired
+	ProjectorUsageAccumulator projectorUsageAccumulator;
+
+	@Autowired
+	@Qualifier("applicationTaskExecutor")
+	Executor taskExecutor;
 	
 
 	// -----------------------------------------------------------------------------
@@ -85,15 +140,26 @@ public class ProjectorAdminController {
 	 * <ul>
 	 * <li>Validates the received files.</li>
 	 * <li>Parses the projectors file if provided.</li>
-	 * <li>Parses the commands file if provided.</li>
+	 * <li>Parses the commands file if provided, at the same time as the
+	 * projectors file.</li>
 	 * <li>Parses the classrooms file if provided.</li>
 	 * <li>Returns a structured response with parsing results.</li>
 	 * </ul>
 	 * </p>
+	 * <p>
+	 * With {@code mode=sync} the tables are made to match the files instead:
+	 * only the inserts, updates and deletes found are applied, and with
+	 * {@code dryRun=true} they are returned without being applied. See
+	 * {@link ICsvSynchronizer}.
+	 * </p>
 	 *
 	 * @param classroomsFile Multipart file containing classroom data (Optional).
 	 * @param projectorsFile Multipart file containing projector data (Optional).
 	 * @param commandsFile   Multipart file containing command data (Optional).
+	 * @param mode           Import mode, {@code sync} to synchronize the tables
+	 *                       (Optional).
+	 * @param dryRun         In sync mode, return the differences without
+	 *                       applying them (Optional).
 	 * @return ResponseEntity containing a success message or error response.
 	 * @throws ProjectorServerException If an issue occurs related to the server
 	 *                                  logic.
@@ -101,16 +167,17 @@ public class ProjectorAdminController {
 	 *                                  files.
 	 * @throws Exception                If an unexpected error occurs.
 	 */
-	@Transactional
 	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
 	//@PostMapping("/parse-multifile")
 	@RequestMapping(method = RequestMethod.POST, value = "/parse-multifile", consumes = "multipart/form-data")
 	public ResponseEntity<?> parseMultifile(
 			@RequestBody( required = false) MultipartFile projectorsFile,
-			@RequestBody( required = false) MultipartFile commandsFile) {
+			@RequestBody( required = false) MultipartFile commandsFile,
+			@RequestParam(value = "mode", required = false) String mode,
+			@RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun) {
 		try {
 			// Log the incoming request to parse commands
-			log.info("POST request for '/parse-multifile' received.");
+			log.info("POST request for '/parse-multifile' received with mode: {}", mode);
 
 			// Initialize message and response DTO for structured results.
 			String message = "";
@@ -124,17 +191,37 @@ public class ProjectorAdminController {
 				throw new ProjectorServerException(498, message); // Custom error for no files received.
 			}
 
+			if (Constants.CSV_IMPORT_MODE_SYNC.equalsIgnoreCase(mode)) {
+				return ResponseEntity.ok().body(this.synchronizeMultifile(projectorsFile, commandsFile, dryRun));
+			}
+
+			// Both files are ingested concurrently, each one on its own worker thread.
+			CompletableFuture<Void> projectorsTask = CompletableFuture.completedFuture(null);
+			CompletableFuture<Void> commandsTask = CompletableFuture.completedFuture(null);
+
 			// Process projectors file if provided.
 			if (projectorsFile != null && !projectorsFile.isEmpty()) {
-				log.info("Processing 'projectors.csv' file.");
-				try (Scanner scanner = new Scanner(projectorsFile.getInputStream())) {
-					this.validateFile(projectorsFile); // Validate the file before processing.
-					richResponseDto.setMessage2(projectorParser.parseProjectors(scanner)); // Parse projectors.
-					richResponseDto.setStatus2(Constants.RESPONSE_STATUS_SUCCESS);
-				} catch (ProjectorServerException e) {
-					richResponseDto.setMessage2(e.getMessage()); // Parse commands.
-					richResponseDto.setStatus2(Constants.RESPONSE_STATUS_ERROR);
-				}
+				projectorsTask = CompletableFuture.runAsync(() -> {
+					log.info("Processing 'projectors.csv' file.");
+					try (Scanner scanner = new Scanner(projectorsFile.getInputStream())) {
+						this.validateFile(projectorsFile); // Validate the file before processing.
+						richResponseDto.setMessage2(projectorParser.parseProjectors(scanner)); // Parse projectors.
+						richResponseDto.setStatus2(Constants.RESPONSE_STATUS_SUCCESS);
+					} catch (ProjectorServerException e) {
+						richResponseDto.setMessage2(e.getMessage());
+						richResponseDto.setStatus2(Constants.RESPONSE_STATUS_ERROR);
+					} catch (IOException e) {
+						log.error("Error reading the file: {}", e.getMessage(), e);
+						richResponseDto.setMessage2("Error encountered while reading the file.");
+						richResponseDto.setStatus2(Constants.RESPONSE_STATUS_ERROR);
+					} catch (RuntimeException e) {
+						// Each chunk is committed on its own, so the ones before the failure are kept.
+						log.error("Unexpected error importing the projectors file: {}", e.getMessage(), e);
+						richResponseDto.setMessage2("Partial import: the file was stopped by an unexpected error, the "
+								+ "records committed before it were kept (" + e.getLocalizedMessage() + ").");
+						richResponseDto.setStatus2(Constants.RESPONSE_STATUS_ERROR);
+					}
+				}, this.taskExecutor);
 			} else {
 				log.info("No 'projectors.csv' file received.");
 				richResponseDto.setMessage2("The request did not include a file for projectors.");
@@ -143,21 +230,36 @@ public class ProjectorAdminController {
 
 			// Process commands file if provided.
 			if (commandsFile != null && !commandsFile.isEmpty()) {
-				log.info("Processing 'commands.csv' file.");
-				try (Scanner scanner = new Scanner(commandsFile.getInputStream())) {
-					this.validateFile(commandsFile); // Validate the file before processing.
-					richResponseDto.setMessage1(this.commandsParser.parseCommands(scanner)); // Parse commands.
-					richResponseDto.setStatus1(Constants.RESPONSE_STATUS_SUCCESS);
-				} catch (ProjectorServerException e) {
-					richResponseDto.setMessage1(e.getMessage()); // Parse commands.
-					richResponseDto.setStatus1(Constants.RESPONSE_STATUS_ERROR);
-				}
+				commandsTask = CompletableFuture.runAsync(() -> {
+					log.info("Processing 'commands.csv' file.");
+					try (Scanner scanner = new Scanner(commandsFile.getInputStream())) {
+						this.validateFile(commandsFile); // Validate the file before processing.
+						richResponseDto.setMessage1(this.commandsParser.parseCommands(scanner)); // Parse commands.
+						richResponseDto.setStatus1(Constants.RESPONSE_STATUS_SUCCESS);
+					} catch (ProjectorServerException e) {
+						richResponseDto.setMessage1(e.getMessage());
+						richResponseDto.setStatus1(Constants.RESPONSE_STATUS_ERROR);
+					} catch (IOException e) {
+						log.error("Error reading the file: {}", e.getMessage(), e);
+						richResponseDto.setMessage1("Error encountered while reading the file.");
+						richResponseDto.setStatus1(Constants.RESPONSE_STATUS_ERROR);
+					} catch (RuntimeException e) {
+						// Each chunk is committed on its own, so the ones before the failure are kept.
+						log.error("Unexpected error importing the commands file: {}", e.getMessage(), e);
+						richResponseDto.setMessage1("Partial import: the file was stopped by an unexpected error, the "
+								+ "records committed before it were kept (" + e.getLocalizedMessage() + ").");
+						richResponseDto.setStatus1(Constants.RESPONSE_STATUS_ERROR);
+					}
+				}, this.taskExecutor);
 			} else {
 				log.info("No 'commands.csv' file received.");
 				richResponseDto.setMessage1("The request did not include a file for commands.");
 				richResponseDto.setStatus1(Constants.RESPONSE_STATUS_WARNING);
 			}
 
+			// Wait for both files, the uploads are only readable during the request.
+			CompletableFuture.allOf(projectorsTask, commandsTask).join();
+
 			// Log the final parsing results.
 			log.info("Commands: {}\nProjectors: {}", richResponseDto.getMessage1(), richResponseDto.getMessage2());
 
@@ -169,11 +271,6 @@ public class ProjectorAdminController {
 			log.error("Projector server error: {}", e.getMessage(), e);
 			return ResponseEntity.internalServerError().body(e.getMapError());
 
-		} catch (IOException e) {
-			// Handle IO errors when reading the files.
-			log.error("Error reading the file: {}", e.getMessage(), e);
-			return ResponseEntity.internalServerError().body("Error encountered while reading the file.");
-
 		} catch (Exception e) {
 			// Catch any unexpected errors.
 			log.error("Unexpected error: {}", e.getMessage(), e);
@@ -181,6 +278,74 @@ public class ProjectorAdminController {
 		}
 	}
 
+	/**
+	 * Synchronizes the tables with the received files, each one on its own worker
+	 * thread.
+	 *
+	 * @param projectorsFile Multipart file containing projector data (Optional).
+	 * @param commandsFile   Multipart file containing command data (Optional).
+	 * @param dryRun         Return the differences without applying them.
+	 * @return The differences found for each file.
+	 */
+	private CsvSyncResponseDto synchronizeMultifile(MultipartFile projectorsFile, MultipartFile commandsFile,
+			boolean dryRun) {
+
+		CsvSyncResponseDto syncResponseDto = new CsvSyncResponseDto();
+		syncResponseDto.setDryRun(dryRun);
+
+		CompletableFuture<Void> projectorsTask = CompletableFuture.completedFuture(null);
+		CompletableFuture<Void> commandsTask = CompletableFuture.completedFuture(null);
+
+		if (projectorsFile != null && !projectorsFile.isEmpty()) {
+			projectorsTask = CompletableFuture.runAsync(() -> {
+				log.info("Synchronizing 'projectors.csv' file.");
+				try (Scanner scanner = new Scanner(projectorsFile.getInputStream())) {
+					this.validateFile(projectorsFile);
+					syncResponseDto.setProjectors(this.csvSynchronizer.synchronizeProjectors(scanner, dryRun));
+				} catch (ProjectorServerException e) {
+					syncResponseDto.setProjectorsMessage(e.getMessage());
+				} catch (IOException e) {
+					log.error("Error reading the file: {}", e.getMessage(), e);
+					syncResponseDto.setProjectorsMessage("Error encountered while reading the file.");
+				} catch (RuntimeException e) {
+					// The differences of a file are applied in one transaction, so nothing was kept.
+					log.error("Unexpected error synchronizing the projectors file: {}", e.getMessage(), e);
+					syncResponseDto.setProjectorsMessage("Unexpected error, no changes were applied ("
+							+ e.getLocalizedMessage() + ").");
+				}
+			}, this.taskExecutor);
+		} else {
+			syncResponseDto.setProjectorsMessage("The request did not include a file for projectors.");
+		}
+
+		if (commandsFile != null && !commandsFile.isEmpty()) {
+			commandsTask = CompletableFuture.runAsync(() -> {
+				log.info("Synchronizing 'commands.csv' file.");
+				try (Scanner scanner = new Scanner(commandsFile.getInputStream())) {
+					this.validateFile(commandsFile);
+					syncResponseDto.setCommands(this.csvSynchronizer.synchronizeCommands(scanner, dryRun));
+				} catch (ProjectorServerException e) {
+					syncResponseDto.setCommandsMessage(e.getMessage());
+				} catch (IOException e) {
+					log.error("Error reading the file: {}", e.getMessage(), e);
+					syncResponseDto.setCommandsMessage("Error encountered while reading the file.");
+				} catch (RuntimeException e) {
+					// The differences of a file are applied in one transaction, so nothing was kept.
+					log.error("Unexpected error synchronizing the commands file: {}", e.getMessage(), e);
+					syncResponseDto.setCommandsMessage("Unexpected error, no changes were applied ("
+							+ e.getLocalizedMessage() + ").");
+				}
+			}, this.taskExecutor);
+		} else {
+			syncResponseDto.setCommandsMessage("The request did not include a file for commands.");
+		}
+
+		// Wait for both files, the uploads are only readable during the request.
+		CompletableFuture.allOf(projectorsTask, commandsTask).join();
+
+		return syncResponseDto;
+	}
+
 	
 	// ---------------------------- PROJECTOR METHODS ------------------------------
 	/**
@@ -237,6 +402,10 @@ public class ProjectorAdminController {
 						model, status);
 			}
 
+			// Show the statuses reported by the agents that are not flushed yet.
+			projectors.forEach(projector -> this.projectorStatusBuffer.getPendingStatus(projector.getClassroom())
+					.ifPresent(projector::setStatus));
+
 			log.info("Successfully retrieved {} projectors.", projectors.getTotalElements());
 			return ResponseEntity.ok(projectors);
 
@@ -306,6 +475,8 @@ public class ProjectorAdminController {
 			}
 
 			this.projectorRepository.deleteAll(projectorEntitiesiList);
+			this.projectorRegistry.invalidate();
+			this.generalOverviewSnapshot.invalidate();
 
 			// Set the response DTO.
 			message = String.format("Successfully removed %d projectors.", projectorEntitiesiList.size());
@@ -347,6 +518,8 @@ public class ProjectorAdminController {
 			List<Projector> projectorsList = this.projectorRepository.findAll();
 			
 			this.projectorRepository.deleteAll(projectorsList);
+			this.projectorRegistry.invalidate();
+			this.generalOverviewSnapshot.invalidate();
 			
 			int deletedRecords = projectorsList.size();
 			
@@ -557,6 +730,8 @@ public class ProjectorAdminController {
 
 			// Delete the commands after server events
 			this.commandRepository.deleteAllInBatch(commandListToDelete);
+			this.commandCatalog.invalidate();
+			this.generalOverviewSnapshot.invalidate();
 
 			String message = String.format("Deleted %d commands and %d associated server events.", recordsDeleted,
 					serverEventsRecordsDeleted);
@@ -585,37 +760,49 @@ public class ProjectorAdminController {
 	 * <p>
 	 * This method fetches the count of server events categorized by their status
 	 * (Canceled, Completed, Delivered, Error, and Pending) and returns this data
-	 * encapsulated in a {@link ServerEventOverviewDto} object.
+	 * encapsulated in a {@link ServerEventOverviewDto} object. Without a date
+	 * range the live {@link ServerEventStatusCounters} are returned. An optional
+	 * date range is counted in the database, limited to the history partitions
+	 * it touches.
 	 * </p>
 	 * 
+	 * @param dateFrom (Optional) Inclusive lower bound of the event creation time.
+	 * @param dateTo   (Optional) Exclusive upper bound of the event creation time.
 	 * @return ResponseEntity containing the event overview DTO if successful, or an
 	 *         error message in case of failure.
 	 */
 	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
 	@GetMapping("/events-overview")
-	public ResponseEntity<?> getEventsOverview() {
+	public ResponseEntity<?> getEventsOverview(
+			@RequestParam(value = "dateFrom", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime dateFrom,
+			@RequestParam(value = "dateTo", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime dateTo) {
 		try {
 			// Logging the request for monitoring and debugging
-			log.info("GET request for '/events-overview' received.");
+			log.info("GET request for '/events-overview' received for range {} - {}.", dateFrom, dateTo);
+
+			// Sin rango de fechas se responde con los contadores en memoria.
+			if (dateFrom == null && dateTo == null && this.serverEventStatusCounters.isReady()) {
+				return ResponseEntity.ok().body(this.serverEventStatusCounters.getOverview());
+			}
 
 			// Creating a DTO object to hold event counts
 			ServerEventOverviewDto serverEventOverviewDto = new ServerEventOverviewDto();
 
 			// Populating the DTO with event counts based on their status
 			serverEventOverviewDto.setCanceledEvents(
-					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_CANCELED));
+					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_CANCELED, dateFrom, dateTo));
 
 			serverEventOverviewDto.setCompletedEvents(
-					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_EXECUTED));
+					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_EXECUTED, dateFrom, dateTo));
 
 			serverEventOverviewDto.setDeliveredEvents(
-					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_SERVED));
+					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_SERVED, dateFrom, dateTo));
 
 			serverEventOverviewDto
-					.setErrorEvents(this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_ERROR));
+					.setErrorEvents(this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_ERROR, dateFrom, dateTo));
 
 			serverEventOverviewDto.setPendingEvents(
-					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_PENDING));
+					this.serverEventHistoryRepository.countServerEventsByStatus(Constants.EVENT_STATUS_PENDING, dateFrom, dateTo));
 
 			
 			log.info(serverEventOverviewDto.toString());
@@ -633,13 +820,125 @@ public class ProjectorAdminController {
 		}
 	}
 
+	/**
+	 * Returns the number of server events per day and status, read from the
+	 * daily rollup instead of the raw history. Events newer than the rollup
+	 * settle delay are not included yet.
+	 * 
+	 * @param filter The optional filters of the report (dates, classroom, floor,
+	 *               model, action, user and status).
+	 * @return ResponseEntity containing the list of daily counts, or an error
+	 *         message in case of failure.
+	 */
+	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
+	@GetMapping("/events-rollup/daily")
+	public ResponseEntity<?> getDailyEventCounts(EventRollupFilterDto filter) {
+		try {
+			log.info("GET request for '/events-rollup/daily' received with filter: {}", filter);
+
+			return ResponseEntity.ok().body(this.serverEventRollupService.findDailyCounts(filter));
+
+		} catch (Exception e) {
+			log.error("Error retrieving daily event counts", e);
+			return ResponseEntity.internalServerError()
+					.body("Unexpected error encountered while retrieving daily event counts.");
+		}
+	}
+
+	/**
+	 * Returns the number of server events per status and value of a dimension
+	 * (classroom, floor, model, action, user or status), read from the daily
+	 * rollup instead of the raw history.
+	 * 
+	 * @param groupBy The dimension to group the events by.
+	 * @param filter  The optional filters of the report (dates, classroom, floor,
+	 *                model, action, user and status).
+	 * @return ResponseEntity containing the list of totals, or an error message in
+	 *         case of failure.
+	 */
+	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
+	@GetMapping("/events-rollup/totals")
+	public ResponseEntity<?> getEventTotals(@RequestParam(value = "groupBy") String groupBy,
+			EventRollupFilterDto filter) {
+		try {
+			log.info("GET request for '/events-rollup/totals' received grouped by '{}' with filter: {}", groupBy,
+					filter);
+
+			return ResponseEntity.ok().body(this.serverEventRollupService.findTotals(groupBy, filter));
+
+		} catch (ProjectorServerException e) {
+			log.error("Error retrieving event totals: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMapError());
+		} catch (Exception e) {
+			log.error("Error retrieving event totals", e);
+			return ResponseEntity.internalServerError()
+					.body("Unexpected error encountered while retrieving event totals.");
+		}
+	}
+
+	/**
+	 * Retrieves the accumulated lamp usage of the projectors, highest first, for
+	 * maintenance planning. The usage is kept in memory from the lamp statuses
+	 * reported by the agents, so no history is read.
+	 * 
+	 * @return The list of {@link ProjectorUsageDto}.
+	 */
+	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
+	@GetMapping("/usage")
+	public ResponseEntity<?> getProjectorUsage() {
+		log.info("GET request for '/usage' received.");
+
+		return ResponseEntity.ok().body(this.projectorUsageAccumulator.getUsages());
+	}
+
+	/**
+	 * Exports the server event history matching the given filters, oldest first,
+	 * as CSV or as newline-delimited JSON.
+	 * <p>
+	 * The events are streamed to the response while they are read from the
+	 * database, so the export can cover any period without holding it in memory.
+	 * </p>
+	 * 
+	 * @param eventFilterObject The filters of the events (Optional).
+	 * @param format            The format: csv (default) or ndjson.
+	 * @return The streamed export, or 400 if the format is not supported.
+	 */
+	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
+	@PostMapping("/events-export")
+	public ResponseEntity<?> exportServerEvents(@RequestBody(required = false) EventFilterObject eventFilterObject,
+			@RequestParam(value = "format", defaultValue = Constants.EXPORT_FORMAT_CSV) String format) {
+		try {
+			log.info("POST request for '/events-export' received in format '{}' with filter: {}", format,
+					eventFilterObject);
+
+			MediaType mediaType = this.serverEventHistoryExporter.getMediaType(format);
+			EventFilterObject filter = eventFilterObject == null ? new EventFilterObject() : eventFilterObject;
+
+			StreamingResponseBody body = outputStream -> {
+				long events = this.serverEventHistoryExporter.export(filter, format, outputStream);
+				log.info("Server event history export finished, {} events written.", events);
+			};
+
+			return ResponseEntity.ok()
+					.contentType(mediaType)
+					.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+							.filename("server-events." + format.toLowerCase()).build().toString())
+					.body(body);
+
+		} catch (ProjectorServerException e) {
+			log.error("Error exporting the server event history: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(e.getMapError());
+		}
+	}
+
 	/**
 	 * Handles HTTP GET requests to retrieve a general overview of server-related
 	 * entities.
 	 * <p>
 	 * This method gathers and returns a summary of various counts, including the
 	 * number of projectors, actions, classrooms, commands, floors, and models. The
-	 * data is encapsulated in a {@link GeneralCountOverviewDto} object.
+	 * data is encapsulated in a {@link GeneralCountOverviewDto} object, served
+	 * from the cached {@link GeneralOverviewSnapshot}.
 	 * </p>
 	 * 
 	 * @return ResponseEntity containing the general overview DTO if successful.
@@ -652,16 +951,8 @@ public class ProjectorAdminController {
 			// Logging the request for monitoring and debugging
 			log.info("GET request for '/general-overview' received.");
 
-			// Creating a DTO object to hold count information
-			GeneralCountOverviewDto projectorOverview = new GeneralCountOverviewDto();
-
-			// Populating the DTO with counts of various entities
-			projectorOverview.setNumberOfProjectors(this.projectorRepository.count());
-			projectorOverview.setNumberOfActions(this.commandRepository.countDistinctActions());
-			projectorOverview.setNumberOfClassrooms(this.projectorRepository.countClassrooms());
-			projectorOverview.setNumberOfCommands(this.commandRepository.count());
-			projectorOverview.setNumberOfFloors(this.projectorRepository.countFloors());
-			projectorOverview.setNumberOfModels(this.commandRepository.countDistinctModels());
+			// Counts cached until an import or a delete changes the tables.
+			GeneralCountOverviewDto projectorOverview = this.generalOverviewSnapshot.getOverview();
 
 			// Returning the populated DTO with an HTTP 200 OK response
 			return ResponseEntity.ok().body(projectorOverview);
@@ -676,6 +967,31 @@ public class ProjectorAdminController {
 		}
 	}
 
+	/**
+	 * Handles HTTP GET requests to retrieve the state of the in-memory command
+	 * catalog used to serve the remote agents.
+	 * <p>
+	 * Returns the version of the loaded catalog, its number of commands and how
+	 * many lookups found (or missed) a command since the server started.
+	 * </p>
+	 *
+	 * @return ResponseEntity containing a {@link CommandCatalogStatsDto}.
+	 */
+	@PreAuthorize("hasRole('" + BaseConstants.ROLE_ADMINISTRADOR + "')")
+	@GetMapping("/command-catalog")
+	public ResponseEntity<?> getCommandCatalogStats() {
+		try {
+			log.info("GET request for '/command-catalog' received.");
+
+			return ResponseEntity.ok().body(this.commandCatalog.getStats());
+
+		} catch (Exception e) {
+			log.error("Error retrieving command catalog statistics", e);
+			return ResponseEntity.internalServerError()
+					.body("Unexpected error encountered while retrieving command catalog statistics.");
+		}
+	}
+
 	// ----------------------------- UTILITY METHODS -------------------------------
 	@Transactional
 	public ResponseEntity<?> deleteAction(List<ActionDto> actionsList) throws ProjectorServerException {
@@ -715,6 +1031,8 @@ public class ProjectorAdminController {
 
 		// Delete all commands associated with the actions
 		int deletedCount = this.commandRepository.deleteCommandsByActions(actionNamesList);
+		this.commandCatalog.invalidate();
+		this.generalOverviewSnapshot.invalidate();
 
 		// Response for successful deletion
 		ResponseDto response = new ResponseDto();
@@ -3,10 +3,15 @@ package es.iesjandula.reaktor.projectors_server.rest;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.aspectj.apache.bcel.classfile.ConstantString;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -33,20 +38,27 @@ import es.iesjandula.reaktor.projectors_server.dtos.ProjectorDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ProjectorModelDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ServerEventBatchDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ServerEventCursorPageDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ServerEventFanOutDto;
 import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
 import es.iesjandula.reaktor.projectors_server.entities.Command;
 import es.iesjandula.reaktor.projectors_server.entities.Projector;
 import es.iesjandula.reaktor.projectors_server.entities.ServerEvent;
 import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
-import es.iesjandula.reaktor.projectors_server.entities.ids.CommandId;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICommandParser;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.IProjectorParser;
 import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRepository;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorStatusBuffer;
+import es.iesjandula.reaktor.projectors_server.services.ServerEventFanOutService;
 import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
 import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import es.iesjandula.reaktor.projectors_server.utils.ServerEventCursor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -72,22 +84,37 @@ public class ProjectorCommonsController {
 	@Autowired
 	IServerEventHistoryRepository serverEventHistoryRepository;
 
+	@Autowired
+	ApplicationEventPublisher applicationEventPublisher;
+
+	@Autowired
+	ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	ProjectorStatusBuffer projectorStatusBuffer;
+
+	@Autowired
+	ServerEventFanOutService serverEventFanOutService;
+
 	/**
 	 * Creates a server event for a projector with the specified model, classroom,
 	 * and action.
 	 * 
-	 * This method retrieves the necessary entities (projector model, classroom,
-	 * projector, and action) from the database, validates the inputs, and creates a
-	 * new server event with the appropriate details.
+	 * This method takes the necessary entities (projector and command) from the
+	 * ones prefetched for the whole batch, validates the inputs, and creates a new
+	 * server event with the appropriate details.
 	 * 
 	 * @param projectorModelName The model name of the projector.
 	 * @param projectorClassroom The classroom where the projector is located.
 	 * @param commandActionName  The action to be performed on the projector.
+	 * @param projectorsByClassroom The projectors of the batch, by lower-case classroom.
+	 * @param commandsByModel    The commands of the action, by lower-case model name.
 	 * @return A ServerEvent entity populated with the correct details.
 	 * @throws ProjectorServerException If any of the entities cannot be found or if
 	 *                                  input parameters are invalid.cla
 	 */
-	private ServerEvent createServerEventEntity(ProjectorDto projectorDto, String commandActionName, String userEmail)
+	private ServerEvent createServerEventEntity(ProjectorDto projectorDto, String commandActionName, String userEmail,
+			Map<String, Projector> projectorsByClassroom, Map<String, Command> commandsByModel)
 			throws ProjectorServerException {
 
 		String model = projectorDto.getModel();
@@ -107,24 +134,23 @@ public class ProjectorCommonsController {
 
 		/* -------------- FORMING PROJECTOR ENTITY -------------- */
 
-		// Retrieve the projector entity using the primary key.
-		Projector projectorEntity = this.projectorRepository.findById(classroom).orElseThrow(() -> {
+		// Retrieve the projector entity from the ones prefetched for the batch.
+		Projector projectorEntity = Optional.ofNullable(projectorsByClassroom.get(KeyUtils.normalize(classroom))).orElseThrow(() -> {
 			return new ProjectorServerException(494,
 					String.format("The projector model '{}' in classroom '{}' does not exist.", model, classroom));
 		});
 
+		// A status reported by the agent but not flushed yet is the current one.
+		this.projectorStatusBuffer.getPendingStatus(projectorEntity.getClassroom()).ifPresent(projectorEntity::setStatus);
+
 		log.debug("PROJECTOR UNIT RETRIEVED: {}", projectorEntity);
 						
 		/* -------------------- END FORMING PROJECTOR ENTITY -------------------- */
 
 		/* -------------------- RETRIEVE COMMAND ENTITY -------------------- */
 
-		// Retrieve the command entity for the given projector model and action.
-		CommandId commandId = new CommandId();
-		commandId.setAction(commandActionName);
-		commandId.setModelName(model);
-
-		Optional<Command> commandOpt = this.commandRepository.findById(commandId);
+		// Retrieve the command entity for the given projector model from the ones prefetched for the batch.
+		Optional<Command> commandOpt = Optional.ofNullable(commandsByModel.get(KeyUtils.normalize(model)));
 
 		Command commandEntity = commandOpt.orElseThrow(() -> {
 			String exceptionMessage = String.format(
@@ -402,11 +428,22 @@ public class ProjectorCommonsController {
 			// Initialize list to hold the server events to be saved
 			List<ServerEventHistory> serverEventHistoryList = new ArrayList<>();
 
+			// Prefetch every projector of the batch and the command of each distinct model.
+			// The database matches them ignoring case, so the maps are keyed in lower case.
+			Map<String, Projector> projectorsByClassroom = this.projectorRepository
+					.findAllById(projectorList.stream().map(ProjectorDto::getClassroom).filter(Objects::nonNull).collect(Collectors.toSet()))
+					.stream().collect(Collectors.toMap(projector -> KeyUtils.normalize(projector.getClassroom()), Function.identity()));
+
+			Map<String, Command> commandsByModel = this.commandRepository
+					.findByActionAndModelNameIn(commandActionName,
+							projectorList.stream().map(ProjectorDto::getModel).filter(Objects::nonNull).collect(Collectors.toSet()))
+					.stream().collect(Collectors.toMap(command -> KeyUtils.normalize(command.getModelName()), Function.identity()));
+
 			// Loop through each projector and create a corresponding server event
 			for (ProjectorDto projectorDto : projectorList) {
 				// Create server event for each projector and add it to the list
 				ServerEvent serverEventEntity = this.createServerEventEntity(projectorDto, commandActionName,
-						userEmail);
+						userEmail, projectorsByClassroom, commandsByModel);
 				serverEventList.add(serverEventEntity);
 				serverEventHistoryList.add(createServerEventHistoryFromServerEntity(serverEventEntity));
 			}
@@ -419,6 +456,17 @@ public class ProjectorCommonsController {
 			this.serverEventRepository.saveAllAndFlush(serverEventList);
 			this.serverEventHistoryRepository.saveAllAndFlush(serverEventHistoryList);
 
+			// Keep the projector registry in step with the TURNING_ON/TURNING_OFF statuses,
+			// these are written with the batch so the status buffer must not overwrite them.
+			for (ServerEvent serverEvent : serverEventList) {
+				String classroom = serverEvent.getProjector().getClassroom();
+				this.projectorRegistry.updateStatus(classroom, serverEvent.getProjector().getStatus());
+				this.projectorStatusBuffer.discard(classroom);
+			}
+
+			// Notify the remote agents once the transaction commits.
+			this.applicationEventPublisher.publishEvent(new ServerEventBatchCreatedEvent(serverEventHistoryList));
+
 			// Log successful operation
 			log.info("{} server events successfully created and saved to the database.", serverEventList.size());
 
@@ -441,18 +489,84 @@ public class ProjectorCommonsController {
 		}
 	}
 
+	/**
+	 * Endpoint to create the same server event for every projector of a floor, a
+	 * model, a status or the whole building.
+	 * 
+	 * Unlike the batch endpoint, the projectors are not listed in the request: the
+	 * events are created with set-based statements over the projectors matching
+	 * the selector, so the cost does not grow with the number of projectors.
+	 * 
+	 * @param serverEventFanOutDto DTO containing the selector and the action.
+	 * @return A ResponseEntity containing the status and message of the operation.
+	 */
+	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" + BaseConstants.ROLE_PROFESOR + "')")
+	@PostMapping(value = "/server-events-fanout")
+	public ResponseEntity<?> createServerEventFanOut(@AuthenticationPrincipal DtoUsuarioExtended usuario,
+			@RequestBody(required = true) ServerEventFanOutDto serverEventFanOutDto) {
+		try {
+			log.debug("POST request for /server-events-fanout received with parameter {}", serverEventFanOutDto);
+
+			// Write the buffered lamp statuses first, the selection reads them from the table.
+			this.projectorStatusBuffer.flush();
+
+			List<ServerEventHistory> serverEventHistoryList = this.serverEventFanOutService
+					.createServerEvents(serverEventFanOutDto, usuario.getEmail());
+
+			ResponseDto response = new ResponseDto();
+			response.setMessage(serverEventHistoryList.size() + " events successfully created.");
+			response.setStatus(Constants.RESPONSE_STATUS_SUCCESS);
+
+			return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+		} catch (ProjectorServerException ex) {
+			log.error("Error occurred while processing server event fan-out: {}", ex.getMessage(), ex);
+			return ResponseEntity.badRequest().body(ex.getMapError());
+		} catch (Exception e) {
+			log.error("Unexpected error creating server events by fan-out", e);
+			return ResponseEntity.internalServerError().body(e.getLocalizedMessage());
+		}
+	}
+
 	@GetMapping("/event-states")
 	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" + BaseConstants.ROLE_PROFESOR + "')")
 	public ResponseEntity<?> getEventStatusList() {
 		return ResponseEntity.ok().body(Constants.POSSIBLE_EVENT_STATUS);
 	}
 
+	/**
+	 * Retrieves a page of the server events table matching the given filters.
+	 * <p>
+	 * By default the page is read by offset and carries the total count. With
+	 * {@code mode=cursor} the events are read after the position of the given
+	 * cursor (the first page when none is given) and the response carries the
+	 * cursor of the next page instead; the total count is only computed when
+	 * {@code withTotal=true}.
+	 * </p>
+	 * 
+	 * @param eventFilterObject The filters of the events.
+	 * @param pageable          The page requested, only its size is used in
+	 *                          cursor mode.
+	 * @param mode              "cursor" to read the page after a cursor.
+	 * @param cursor            Token returned with the previous page in cursor
+	 *                          mode.
+	 * @param withTotal         Whether to count the matching events in cursor
+	 *                          mode.
+	 * @return The page of events.
+	 */
 	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" + BaseConstants.ROLE_PROFESOR + "')")
 	@PostMapping("/server-events")
 	public ResponseEntity<?> getEventsPage(@RequestBody(required = false) EventFilterObject eventFilterObject,
-			@PageableDefault(page = 0, size = 10) Pageable pageable) {
+			@PageableDefault(page = 0, size = 10) Pageable pageable,
+			@RequestParam(value = "mode", required = false) String mode,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal) {
 		log.info("POST request for '/server-events' received.");
 
+		if (eventFilterObject == null) {
+			eventFilterObject = new EventFilterObject();
+		}
+
 		log.debug("Classroom: {}", eventFilterObject.getClassroomName());
 		log.debug("Floor: {}", eventFilterObject.getFloorName());
 		log.debug("Model: {}", eventFilterObject.getModelName());
@@ -461,14 +575,58 @@ public class ProjectorCommonsController {
 		log.debug("getEventId: {}", eventFilterObject.getEventId());
 		log.debug("getUser: {}", eventFilterObject.getUser());
 		log.debug("getDateTime: {}", eventFilterObject.getDateTime());
+		log.debug("Date range: {} - {}", eventFilterObject.getDateFrom(), eventFilterObject.getDateTo());
+
+		if (Constants.EVENTS_PAGE_MODE_CURSOR.equalsIgnoreCase(mode)) {
+			try {
+				return ResponseEntity.ok().body(this.getEventsCursorPage(eventFilterObject, pageable.getPageSize(),
+						cursor, withTotal));
+			} catch (ProjectorServerException ex) {
+				log.error("Error reading the server events after cursor '{}': {}", cursor, ex.getMessage());
+				return ResponseEntity.badRequest().body(ex.getMapError());
+			}
+		}
 
-		Page<TableServerEventDto> pagina = this.serverEventHistoryRepository.getFilteredServerEventDtosPage(pageable,
-				eventFilterObject.getClassroomName(), eventFilterObject.getFloorName(),
-				eventFilterObject.getModelName(), eventFilterObject.getActionStatus());
+		Page<TableServerEventDto> pagina = this.serverEventHistoryRepository
+				.findFilteredServerEventDtosPage(eventFilterObject, pageable);
 
 		log.debug("Recuperados:" + pagina.toList().size());
 
 		return ResponseEntity.ok().body(pagina);
 	}
 
+	/**
+	 * Reads the page of the server events table that follows a cursor. One more
+	 * event than requested is read to know whether there is a next page.
+	 * 
+	 * @param eventFilterObject The filters of the events.
+	 * @param size              The number of events of the page.
+	 * @param cursor            The cursor of the previous page, null for the first
+	 *                          one.
+	 * @param withTotal         Whether to count the matching events.
+	 * @return The page of events with the cursor of the next one.
+	 * @throws ProjectorServerException If the cursor is not valid.
+	 */
+	private ServerEventCursorPageDto getEventsCursorPage(EventFilterObject eventFilterObject, int size, String cursor,
+			boolean withTotal) throws ProjectorServerException {
+		ServerEventCursor position = cursor == null || cursor.isBlank() ? null : ServerEventCursor.decode(cursor);
+
+		List<TableServerEventDto> events = this.serverEventHistoryRepository.findFilteredServerEventDtosAfter(
+				eventFilterObject, position == null ? null : position.dateTime(),
+				position == null ? null : position.eventId(), size + 1);
+
+		String nextCursor = null;
+		if (events.size() > size) {
+			events = events.subList(0, size);
+			nextCursor = ServerEventCursor.after(events.get(size - 1)).encode();
+		}
+
+		Long totalElements = withTotal ? this.serverEventHistoryRepository.countFilteredServerEvents(eventFilterObject)
+				: null;
+
+		log.debug("Recuperados: {}", events.size());
+
+		return new ServerEventCursorPageDto(events, nextCursor, totalElements);
+	}
+
 }
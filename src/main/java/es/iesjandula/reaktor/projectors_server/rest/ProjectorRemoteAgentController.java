@@ -1,30 +1,48 @@
 package es.iesjandula.reaktor.projectors_server.rest;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
 import es.iesjandula.reaktor.base.utils.BaseConstants;
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusBatchResultDto;
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusBatchResultListDto;
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusReportDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandTableDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
 import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
-import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
-import es.iesjandula.reaktor.projectors_server.entities.Command;
-import es.iesjandula.reaktor.projectors_server.entities.Projector;
-import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.ICommandParser;
 import es.iesjandula.reaktor.projectors_server.parsers.interfaces.IProjectorParser;
-import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
 import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRepository;
+import es.iesjandula.reaktor.projectors_server.services.AgentLongPollRegistry;
+import es.iesjandula.reaktor.projectors_server.services.AgentWireEncoder;
+import es.iesjandula.reaktor.projectors_server.services.CommandCatalog;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
+import es.iesjandula.reaktor.projectors_server.services.RemoteAgentService;
 import es.iesjandula.reaktor.projectors_server.utils.Constants;
 import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
 import lombok.extern.slf4j.Slf4j;
@@ -47,11 +65,26 @@ public class ProjectorRemoteAgentController {
 	IProjectorRepository projectorRepository;
 
 	@Autowired
-	ICommandRepository commandRepository;
+	CommandCatalog commandCatalog;
+
+	@Autowired
+	ProjectorRegistry projectorRegistry;
 
 	@Autowired
 	IServerEventHistoryRepository serverEventHistoryRepository;
 
+	@Autowired
+	RemoteAgentService remoteAgentService;
+
+	@Autowired
+	AgentLongPollRegistry agentLongPollRegistry;
+
+	@Autowired
+	RequestMappingHandlerAdapter requestMappingHandlerAdapter;
+
+	@Autowired
+	ContentNegotiationManager contentNegotiationManager;
+
 	// -------------------------- SERVER EVENT METHODS -----------------------------
 
 	/**
@@ -83,59 +116,8 @@ public class ProjectorRemoteAgentController {
 					"PUT request for '/server-events' received with parameters 'Event ID: {}, Response code: {}', Classroom: {}",
 					eventId, rarc, classroom);
 
-			// Prepare the response object to send back the status and message.
-			ResponseDto response = new ResponseDto();
-			String message;
-			String eventNewStatus;
-
-			// Fetch the name of the model from the
-			String modelName = this.projectorRepository.findProjectorModelNameByClassroom(classroom);
-
-			// Build the requesting model's command entity for comparison.
-			Command command = this.commandRepository.findByModelNameAndCommand(modelName, rarc)
-					.orElseThrow(() -> new ProjectorServerException(404,
-							"El codigo de respuesta y modelo recibidos en la petición no corresponden a ningun comando registrado."));
-
-			// Configure the event new status based on code received.
-			eventNewStatus = command.getAction().equalsIgnoreCase(Constants.ACKNWOLEDGE_ACTION_NAME)
-					? Constants.EVENT_STATUS_EXECUTED
-					: Constants.EVENT_STATUS_ERROR;
-
-			log.info("Status to be assigned: {}", eventNewStatus);
-
-			// Validate that the new event status is part of the acceptable list.
-			if (!Constants.POSSIBLE_EVENT_STATUS.contains(eventNewStatus)) {
-				message = "Error updating event status: The selected status for the event does not exist.";
-				log.error(message);
-				throw new ProjectorServerException(499, message); // Error code for invalid event status.
-			}
-
-			// Convert eventId to Long
-			Long eventIdLong = Long.valueOf(eventId);
-
-			// Fetch the corresponding event from the database history.
-			ServerEventHistory serverEventEntity = this.serverEventHistoryRepository.findById(eventIdLong)
-					.orElseThrow(() -> {
-						String messagex = "The server event with ID '" + eventIdLong + "' does not exist.";
-						log.error(messagex);
-						return new ProjectorServerException(494, messagex); // Error code for event not found.
-					});
-
-			// Capture the current status of the event before updating it.
-			String oldStatus = serverEventEntity.getActionStatus();
-
-			// Update the event's status to the new status.
-			serverEventEntity.setActionStatus(eventNewStatus);
-
-			// Prepare a success message with the old and new status.
-			message = "Event with ID " + eventId + " successfully updated from " + oldStatus + " to " + eventNewStatus;
-			log.info(message); // Log successful event status update.
-
-			// Set the response status and message.
-			response.setStatus(Constants.RESPONSE_STATUS_SUCCESS);
-			response.setMessage(message);
-
-			this.serverEventHistoryRepository.saveAndFlush(serverEventEntity);
+			// Apply the new status according to the received response code.
+			ResponseDto response = this.remoteAgentService.updateServerEventStatus(eventId, rarc, classroom);
 
 			// Return the response with success status.
 			return ResponseEntity.ok().body(response);
@@ -182,106 +164,206 @@ public class ProjectorRemoteAgentController {
 
 		try {
 
-			// Recupera el proyector o lanza error si no existe.
-			Projector projectorEntity = this.projectorRepository.findById(projectorClassroom).orElseThrow(()
-					-> new ProjectorServerException(494, "ERROR: There are no projectors assigned to this classroom.")
-			);
-
-			log.info(projectorEntity.toString());
-
-			// Recupera listado eventos servidor para este proyector que estan en pendiente.
-			List<ServerEventHistory> serverEventsList = this.serverEventHistoryRepository
-					.findRecentPendingServerEventsByClassroom(projectorClassroom);
-
 			// Actualiza estado encendido/apagado del proyector.
-			String modelName = this.projectorRepository.findProjectorModelNameByClassroom(projectorClassroom);
-
-			log.info(modelName);
-
-			// Build the requesting model's command entity for comparison.
-			Command statusCommand = this.commandRepository.findByModelNameAndCommand(modelName, projectorStatus)
-					.orElseThrow(()
-							-> new ProjectorServerException(404,"El codigo de estado de la petición no corresponden a ningun comando registrado.")
-							);
-
-			log.info(statusCommand.toString());
+			this.remoteAgentService.updateProjectorStatus(projectorClassroom, projectorStatus);
 
-			if (statusCommand.getAction().equalsIgnoreCase(Constants.LAMP_ON)) {
+			// Sirve el evento pendiente mas reciente, si lo hay.
+			return this.remoteAgentService.claimNextServerEvent(projectorClassroom)
+					.<ResponseEntity<?>>map(simpleEvent -> ResponseEntity.ok().body(simpleEvent))
+					.orElseGet(() -> ResponseEntity.noContent().build());
 
-				projectorEntity.setStatus(Constants.PROJECTOR_ON);
-
-			} else if (statusCommand.getAction().equalsIgnoreCase(Constants.LAMP_OFF)) {
+		} catch (ProjectorServerException e) {
+			return ResponseEntity.internalServerError().body(e.getMapError());
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError().body( e.getLocalizedMessage());
+		}
+	}
 
-				projectorEntity.setStatus(Constants.PROJECTOR_OFF);
+	/**
+	 * Long-poll variant of the GET "/server-events" endpoint, selected with the
+	 * {@code longPoll=true} request parameter.
+	 * <p>
+	 * The projector status is updated as in the regular endpoint, but when there
+	 * are no pending events the request is kept open until a new event for the
+	 * classroom is committed or the configured timeout expires, in which case a
+	 * 204 No Content response is returned.
+	 * </p>
+	 *
+	 * @param projectorClassroom The identifier of the classroom where the projector is located.
+	 * @param projectorStatus    The current status code reported by the projector (e.g., power state).
+	 * @return A {@link DeferredResult} completed with the next server event for the projector,
+	 *         a no-content response on timeout, or an error response.
+	 */
+	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" +  BaseConstants.ROLE_CLIENTE_PROYECTOR + "')")
+	@GetMapping(value = "/server-events", params = "longPoll=true")
+	public DeferredResult<ResponseEntity<?>> serveCommandToControllerLongPoll(@RequestParam(required = true) String projectorClassroom,
+			@RequestParam(required = true) String projectorStatus)
+	{
+		log.info("Long-poll GET request for '/server-events' received with classroom '{}' and satus {}.", projectorClassroom, projectorStatus);
 
-			} else {
+		try {
 
-				throw new ProjectorServerException(499, "Error al registrar el estado del proyector. Estado desconocido.");
+			// Actualiza estado encendido/apagado del proyector.
+			this.remoteAgentService.updateProjectorStatus(projectorClassroom, projectorStatus);
 
-			}
+			// Deja la peticion en espera hasta que haya un evento para el aula.
+			return this.agentLongPollRegistry.park(projectorClassroom);
 
-			log.info(projectorEntity.getStatus());
+		} catch (ProjectorServerException e) {
+			DeferredResult<ResponseEntity<?>> errorResult = new DeferredResult<>();
+			errorResult.setResult(ResponseEntity.internalServerError().body(e.getMapError()));
+			return errorResult;
+		} catch (Exception e) {
+			DeferredResult<ResponseEntity<?>> errorResult = new DeferredResult<>();
+			errorResult.setResult(ResponseEntity.internalServerError().body(e.getLocalizedMessage()));
+			return errorResult;
+		}
+	}
 
-			// Guarda el estado del proyector antes de continuar..
-			this.projectorRepository.saveAndFlush(projectorEntity);
+	/**
+	 * Batch variant of the GET "/server-events" endpoint, for remote agents that
+	 * control the projectors of several classrooms.
+	 * <p>
+	 * The status reported for each classroom is applied as in the regular
+	 * endpoint, and the most recent pending server event of every classroom is
+	 * claimed in a single batch. A report that cannot be processed carries its
+	 * error without affecting the rest.
+	 * </p>
+	 *
+	 * @param reports The status reported for each classroom.
+	 * @return A {@link ResponseEntity} containing the outcome of each report, in
+	 *         the same order, or an error response if the batch is empty or too
+	 *         large.
+	 */
+	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" +  BaseConstants.ROLE_CLIENTE_PROYECTOR + "')")
+	@PostMapping(value = "/agent-status-batch")
+	public ResponseEntity<?> serveCommandsToControllerBatch(@RequestBody(required = true) List<AgentStatusReportDto> reports)
+	{
+		log.info("POST request for '/agent-status-batch' received with {} reports.", reports.size());
 
-			if (serverEventsList.isEmpty()) {
-				return ResponseEntity.noContent().build();
-			}
+		try {
 
-			// Evento servidor mas reciente de todos.
-			ServerEventHistory mostRecentEvent = serverEventsList.get(0);
-
-			// Configura evento simplificado.
-			SimplifiedServerEventDto simpleEvent = new SimplifiedServerEventDto();
-			simpleEvent.setActionStatus(mostRecentEvent.getActionStatus());
-			simpleEvent.setCommandInstruction(mostRecentEvent.getCommand());
-			simpleEvent.setEventId(mostRecentEvent.getEventId());
-
-			// Bloque que actualiza los estados de los otros eventos en pendiente que
-			// ya no deberan ser servidos en la proxima peticion de recientes.
-			for (ServerEventHistory serverEvent : serverEventsList) {
-				if (serverEvent.equals(serverEventsList.get(0))) {
-					serverEvent.setActionStatus(Constants.EVENT_STATUS_SERVED);
-				} else {
-					serverEvent.setActionStatus(Constants.EVENT_STATUS_CANCELED);
-				}
+			if (reports.isEmpty() || reports.size() > Constants.AGENT_STATUS_BATCH_MAX_SIZE) {
+				throw new ProjectorServerException(400, "ERROR: A batch must contain between 1 and "
+						+ Constants.AGENT_STATUS_BATCH_MAX_SIZE + " status reports.");
 			}
 
-			this.serverEventHistoryRepository.saveAllAndFlush(serverEventsList);
+			// Actualiza el estado de cada proyector y sirve sus eventos pendientes en lote.
+			List<AgentStatusBatchResultDto> results = this.remoteAgentService.processStatusBatch(reports);
 
-			return ResponseEntity.ok().body(simpleEvent);
+			return ResponseEntity.ok().body(new AgentStatusBatchResultListDto(results));
 
 		} catch (ProjectorServerException e) {
-			return ResponseEntity.internalServerError().body(e.getMapError());
+			return ResponseEntity.badRequest().body(e.getMapError());
 		} catch (Exception e) {
-			return ResponseEntity.internalServerError().body( e.getLocalizedMessage());
+			return ResponseEntity.internalServerError().body(e.getLocalizedMessage());
 		}
 	}
 
+	/**
+	 * Serves the configuration of the projector of a classroom to its remote
+	 * agent: the status inquiry command of its model, or with {@code all=true}
+	 * every command of its model so the agent can cache them.
+	 * <p>
+	 * The response carries a strong ETag derived from the commands of the model,
+	 * so an agent that sends it back in {@code If-None-Match} gets a 304 Not
+	 * Modified response without a body until the commands change.
+	 * </p>
+	 *
+	 * @param projectorClassroom The identifier of the classroom where the projector is located.
+	 * @param all                Whether to return every command of the model.
+	 * @param webRequest         The current request, the ETag differs for each
+	 *                           negotiated format.
+	 * @return A {@link ResponseEntity} containing the command or commands, a 304
+	 *         response if the agent already has them, or an error response if the
+	 *         projector or its commands are not found.
+	 */
 	@PreAuthorize("hasAnyRole('" + BaseConstants.ROLE_ADMINISTRADOR + "', '" + BaseConstants.ROLE_CLIENTE_PROYECTOR + "')")
 	@GetMapping(value = "/config-params")
-	public ResponseEntity<?> serveConfigParamsToRemoteAgents(@RequestParam(required = true) String projectorClassroom) {
+	public ResponseEntity<?> serveConfigParamsToRemoteAgents(@RequestParam(required = true) String projectorClassroom,
+			@RequestParam(value = "all", defaultValue = "false") boolean all,
+			NativeWebRequest webRequest) {
 		try {
 
 			// Recupera el proyector o lanza error si no existe.
-			Projector projectorEntity = this.projectorRepository.findById(projectorClassroom).orElseThrow(() ->
+			ProjectorInfoDto projector = this.projectorRegistry.findByClassroom(projectorClassroom).orElseThrow(() ->
 				new ProjectorServerException(494, "ERROR: There are no projectors assigned to this classroom.")
 			);
 
-			// Busca el comando relativo a la interrogación de estado del proyector.
-			// Es necesario servir este comando a los proyectores cuando se inicializan para que sepan "como preguntar" el estado de la lampara.
-			Command statusInquiryCommand = this.commandRepository
-					.findByModelNameAndAction(projectorEntity.getModel(), Constants.STATUS_INQUIRY_COMMAND)
-					.orElseThrow(() -> new ProjectorServerException(494,
-							"ERROR: There are no inquiry commands assigned to this projector model."));
+			Object configParams;
+
+			if (all) {
+				// Tabla completa de comandos del modelo, para que el agente la guarde.
+				List<CommandDto> modelCommands = this.commandCatalog.findByModelName(projector.getModel());
+
+				if (modelCommands.isEmpty()) {
+					throw new ProjectorServerException(494, "ERROR: There are no commands assigned to this projector model.");
+				}
+				configParams = new CommandTableDto(modelCommands);
+
+			} else {
+				// Busca el comando relativo a la interrogación de estado del proyector.
+				// Es necesario servir este comando a los proyectores cuando se inicializan para que sepan "como preguntar" el estado de la lampara.
+				configParams = this.commandCatalog
+						.findByModelNameAndAction(projector.getModel(), Constants.STATUS_INQUIRY_COMMAND)
+						.orElseThrow(() -> new ProjectorServerException(494,
+								"ERROR: There are no inquiry commands assigned to this projector model."));
+			}
+
+			// La ETag identifica los comandos del modelo y la representacion que se va a escribir.
+			boolean agentWireFormat = AgentWireEncoder.MEDIA_TYPE
+					.equalsTypeAndSubtype(this.negotiateMediaType(webRequest, configParams.getClass()));
+
+			String eTag = "\"" + this.commandCatalog.getModelFingerprint(projector.getModel())
+					+ (all ? "-all" : "-inquiry") + (agentWireFormat ? "-v1" : "-json") + "\"";
 
-			// Devuelve el comando al cliente.
-			return ResponseEntity.ok().body(statusInquiryCommand);
+			// Con If-None-Match igual a la ETag, Spring responde 304 sin serializar el cuerpo.
+			return ResponseEntity.ok()
+					.eTag(eTag)
+					.cacheControl(CacheControl.noCache())
+					.varyBy(HttpHeaders.ACCEPT)
+					.body(configParams);
 
 		} catch (ProjectorServerException e) {
 			return ResponseEntity.internalServerError().body(e.getMapError());
 		}
 	}
 
+	/**
+	 * Determines the media type the body will be written with, the same way the
+	 * message converters are chosen: the accepted types in order of preference
+	 * against the types each converter can write, in registration order.
+	 * <p>
+	 * The 304 check runs before the body is written, so the ETag must be derived
+	 * from the negotiated type before returning.
+	 * </p>
+	 *
+	 * @param webRequest The current request.
+	 * @param bodyClass  The class of the body to write.
+	 * @return The negotiated media type, JSON if none is acceptable (the request
+	 *         then ends with 406 anyway).
+	 */
+	private MediaType negotiateMediaType(NativeWebRequest webRequest, Class<?> bodyClass) {
+		List<MediaType> producibleTypes = new ArrayList<>();
+		for (HttpMessageConverter<?> converter : this.requestMappingHandlerAdapter.getMessageConverters()) {
+			if (converter.canWrite(bodyClass, null)) {
+				producibleTypes.addAll(converter.getSupportedMediaTypes(bodyClass));
+			}
+		}
+
+		try {
+			for (MediaType acceptedType : this.contentNegotiationManager.resolveMediaTypes(webRequest)) {
+				for (MediaType producibleType : producibleTypes) {
+					if (producibleType.isConcrete() && acceptedType.isCompatibleWith(producibleType)) {
+						return producibleType;
+					}
+				}
+			}
+		} catch (HttpMediaTypeNotAcceptableException e) {
+			log.debug("Invalid Accept header, no representation can be negotiated.", e);
+		}
+
+		return MediaType.APPLICATION_JSON;
+	}
+
 }
@@ -0,0 +1,207 @@
+package es.iesjandula.reaktor.projectors_server.rest;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.iesjandula.reaktor.projectors_server.dtos.AgentSocketMessageDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
+import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import es.iesjandula.reaktor.projectors_server.services.ProjectorRegistry;
+import es.iesjandula.reaktor.projectors_server.services.RemoteAgentService;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WebSocket counterpart of {@link ProjectorRemoteAgentController}.
+ * <p>
+ * Each remote agent opens a single socket for its classroom and keeps it open.
+ * Pending server events are pushed as {@link SimplifiedServerEventDto} frames as
+ * soon as they are committed, and the agent reports back its lamp status and
+ * the response codes of the executed events as {@link AgentSocketMessageDto}
+ * frames over the same socket.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ProjectorRemoteAgentSocketHandler extends TextWebSocketHandler
+{
+	/**
+	 * Maximum time in milliseconds a send operation may block a session.
+	 */
+	private static final int SEND_TIME_LIMIT = 10000;
+
+	/**
+	 * Maximum number of bytes buffered for a slow session.
+	 */
+	private static final int BUFFER_SIZE_LIMIT = 64 * 1024;
+
+	/**
+	 * Open sessions indexed by the classroom of the connected agent.
+	 */
+	private final Map<String, WebSocketSession> agentSessions = new ConcurrentHashMap<>();
+
+	@Autowired
+	private RemoteAgentService remoteAgentService;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Override
+	public void afterConnectionEstablished(WebSocketSession session) throws Exception
+	{
+		// The batches name the classroom as it is stored, whatever the case the agent sent.
+		String classroom = this.projectorRegistry.resolveClassroom(this.getClassroom(session));
+		session.getAttributes().put(Constants.AGENT_SOCKET_CLASSROOM_ATTRIBUTE, classroom);
+
+		WebSocketSession agentSession = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT,
+				BUFFER_SIZE_LIMIT);
+
+		// Only one socket per classroom is kept, the newest one wins.
+		WebSocketSession previousSession = this.agentSessions.put(classroom, agentSession);
+		if (previousSession != null && previousSession.isOpen()) {
+			previousSession.close(CloseStatus.POLICY_VIOLATION.withReason("Replaced by a newer connection."));
+		}
+
+		log.info("Remote agent socket opened for classroom '{}'.", classroom);
+
+		// Deliver whatever was left pending while the agent was disconnected.
+		this.pushNextServerEvent(classroom, agentSession);
+	}
+
+	@Override
+	protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception
+	{
+		String classroom = this.getClassroom(session);
+		WebSocketSession agentSession = this.agentSessions.getOrDefault(classroom, session);
+
+		try {
+			AgentSocketMessageDto agentMessage = this.objectMapper.readValue(message.getPayload(),
+					AgentSocketMessageDto.class);
+
+			log.debug("Remote agent frame received for classroom '{}': {}", classroom, agentMessage);
+
+			if (Constants.AGENT_SOCKET_MESSAGE_STATUS.equalsIgnoreCase(agentMessage.getType())) {
+				// A status frame works as a poll: update the lamp status and serve.
+				this.remoteAgentService.updateProjectorStatus(classroom, agentMessage.getCode());
+				this.pushNextServerEvent(classroom, agentSession);
+
+			} else if (Constants.AGENT_SOCKET_MESSAGE_RARC.equalsIgnoreCase(agentMessage.getType())) {
+				this.remoteAgentService.updateServerEventStatus(String.valueOf(agentMessage.getEventId()),
+						agentMessage.getCode(), classroom);
+
+			} else {
+				throw new ProjectorServerException(499, "Unknown remote agent frame type: " + agentMessage.getType());
+			}
+
+		} catch (ProjectorServerException e) {
+			log.error("Error processing remote agent frame for classroom '{}'.", classroom, e);
+			this.send(agentSession, new ResponseDto(Constants.RESPONSE_STATUS_ERROR, e.getMessage()));
+		} catch (Exception e) {
+			log.error("Unexpected error processing remote agent frame for classroom '{}'.", classroom, e);
+			this.send(agentSession, new ResponseDto(Constants.RESPONSE_STATUS_ERROR, e.getLocalizedMessage()));
+		}
+	}
+
+	@Override
+	public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception
+	{
+		String classroom = this.getClassroom(session);
+
+		// Only remove the entry if it still belongs to this session.
+		this.agentSessions.computeIfPresent(classroom,
+				(key, agentSession) -> agentSession.getId().equals(session.getId()) ? null : agentSession);
+
+		log.info("Remote agent socket closed for classroom '{}' with status {}.", classroom, status);
+	}
+
+	/**
+	 * Pushes the new pending events of a committed batch to the connected agents.
+	 *
+	 * @param event The batch creation event.
+	 */
+	@Async
+	@TransactionalEventListener
+	public void onServerEventBatchCreated(ServerEventBatchCreatedEvent event)
+	{
+		for (String classroom : event.getPendingClassrooms()) {
+			WebSocketSession agentSession = this.agentSessions.get(classroom);
+
+			if (agentSession != null && agentSession.isOpen()) {
+				// A failing classroom must not keep the rest of the batch from being pushed.
+				try {
+					this.pushNextServerEvent(classroom, agentSession);
+				} catch (Exception e) {
+					log.error("Unexpected error pushing the pending event of classroom '{}'.", classroom, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Claims the next pending event of a classroom and sends it to its agent. If
+	 * the frame cannot be sent the event is put back as pending.
+	 *
+	 * @param classroom    The classroom of the agent.
+	 * @param agentSession The session of the agent.
+	 */
+	private void pushNextServerEvent(String classroom, WebSocketSession agentSession)
+	{
+		Optional<SimplifiedServerEventDto> serverEvent = this.remoteAgentService.claimNextServerEvent(classroom);
+
+		if (serverEvent.isPresent() && !this.send(agentSession, serverEvent.get())) {
+			this.remoteAgentService.releaseServerEvent(classroom, serverEvent.get());
+		}
+	}
+
+	/**
+	 * Serializes and sends a frame to an agent session.
+	 * <p>
+	 * Any failure is caught: the session may close at any moment, and the
+	 * session decorator throws an unchecked exception when its limits are
+	 * exceeded.
+	 * </p>
+	 *
+	 * @param agentSession The session of the agent.
+	 * @param payload      The object to send as JSON.
+	 * @return {@code true} if the frame was sent.
+	 */
+	private boolean send(WebSocketSession agentSession, Object payload)
+	{
+		try {
+			agentSession.sendMessage(new TextMessage(this.objectMapper.writeValueAsString(payload)));
+			return true;
+		} catch (Exception e) {
+			log.error("Error sending frame to remote agent session '{}'.", agentSession.getId(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the classroom the agent registered with during the handshake.
+	 *
+	 * @param session The session of the agent.
+	 * @return The classroom of the agent.
+	 */
+	private String getClassroom(WebSocketSession session)
+	{
+		return (String) session.getAttributes().get(Constants.AGENT_SOCKET_CLASSROOM_ATTRIBUTE);
+	}
+}
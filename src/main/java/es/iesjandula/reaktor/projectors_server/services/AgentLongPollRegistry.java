@@ -0,0 +1,139 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the long-poll requests of the remote agents that are waiting for a new
+ * server event in their classroom.
+ * <p>
+ * A parked request is completed as soon as a batch containing a pending event
+ * for its classroom is committed, or with a 204 No Content response once the
+ * configured timeout expires.
+ * </p>
+ */
+@Slf4j
+@Component
+public class AgentLongPollRegistry
+{
+	/**
+	 * Parked requests grouped by the classroom of the requesting agent.
+	 */
+	private final Map<String, Set<DeferredResult<ResponseEntity<?>>>> waitingAgents = new ConcurrentHashMap<>();
+
+	@Autowired
+	private RemoteAgentService remoteAgentService;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	/**
+	 * Maximum time in milliseconds a long-poll request is kept waiting.
+	 */
+	@Value("${reaktor.projectors.long-poll-timeout:20000}")
+	private long longPollTimeout;
+
+	/**
+	 * Parks a long-poll request for the given classroom.
+	 * <p>
+	 * The request is registered before looking for pending events so that a batch
+	 * committed in between is never missed. If that first claim fails, the
+	 * request is unregistered and completed with the error.
+	 * </p>
+	 *
+	 * @param receivedClassroom The classroom sent by the requesting agent.
+	 * @return The deferred result that will hold the response for the agent.
+	 */
+	public DeferredResult<ResponseEntity<?>> park(String receivedClassroom)
+	{
+		// The batches name the classroom as it is stored, whatever the case the agent sent.
+		String projectorClassroom = this.projectorRegistry.resolveClassroom(receivedClassroom);
+
+		DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(this.longPollTimeout,
+				ResponseEntity.noContent().build());
+
+		deferredResult.onCompletion(() -> this.unpark(projectorClassroom, deferredResult));
+
+		this.waitingAgents.computeIfAbsent(projectorClassroom, classroom -> ConcurrentHashMap.newKeySet())
+				.add(deferredResult);
+
+		// Serve right away if there was already something pending.
+		Optional<SimplifiedServerEventDto> serverEvent;
+		try {
+			serverEvent = this.remoteAgentService.claimNextServerEvent(projectorClassroom);
+		} catch (RuntimeException e) {
+			// Never leave the request registered, a later batch would claim an event for nobody.
+			this.unpark(projectorClassroom, deferredResult);
+			log.error("Unexpected error claiming the pending event of classroom '{}'.", projectorClassroom, e);
+			deferredResult.setResult(ResponseEntity.internalServerError().body(e.getLocalizedMessage()));
+			return deferredResult;
+		}
+
+		serverEvent.ifPresent(simpleEvent -> deferredResult.setResult(ResponseEntity.ok().body(simpleEvent)));
+
+		log.debug("Long-poll request for classroom '{}' parked: {}.", projectorClassroom, serverEvent.isEmpty());
+
+		return deferredResult;
+	}
+
+	/**
+	 * Wakes up the agents waiting on the classrooms of a committed batch.
+	 *
+	 * @param event The batch creation event.
+	 */
+	@Async
+	@TransactionalEventListener
+	public void onServerEventBatchCreated(ServerEventBatchCreatedEvent event)
+	{
+		for (String classroom : event.getPendingClassrooms()) {
+			Set<DeferredResult<ResponseEntity<?>>> waiting = this.waitingAgents.remove(classroom);
+
+			if (waiting == null) {
+				continue;
+			}
+
+			for (DeferredResult<ResponseEntity<?>> deferredResult : waiting) {
+				if (deferredResult.isSetOrExpired()) {
+					continue;
+				}
+
+				try {
+					deferredResult.setResult(this.remoteAgentService.claimNextServerEvent(classroom)
+							.<ResponseEntity<?>>map(simpleEvent -> ResponseEntity.ok().body(simpleEvent))
+							.orElseGet(() -> ResponseEntity.noContent().build()));
+				} catch (Exception e) {
+					log.error("Unexpected error serving long-poll request for classroom '{}'.", classroom, e);
+					deferredResult.setResult(ResponseEntity.internalServerError().body(e.getLocalizedMessage()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a completed request from the waiting list.
+	 *
+	 * @param projectorClassroom The classroom of the agent.
+	 * @param deferredResult     The completed request.
+	 */
+	private void unpark(String projectorClassroom, DeferredResult<ResponseEntity<?>> deferredResult)
+	{
+		this.waitingAgents.computeIfPresent(projectorClassroom, (classroom, waiting) -> {
+			waiting.remove(deferredResult);
+			return waiting.isEmpty() ? null : waiting;
+		});
+	}
+}
@@ -0,0 +1,237 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusBatchResultDto;
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusBatchResultListDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandTableDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ErrorMapDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
+import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+
+/**
+ * Encodes the responses of the agent endpoints in the compact wire format
+ * {@code text/vnd.reaktor.agent.v1}, for devices with little memory.
+ * <p>
+ * Each record is a header line of fields separated by {@code ;}, whose last
+ * field is the length in bytes of the payload that follows the line break. The
+ * payload is copied as is, so commands never need escaping. In the header
+ * fields the characters {@code %}, {@code ;}, line feed and carriage return
+ * are escaped as {@code %25}, {@code %3B}, {@code %0A} and {@code %0D}:
+ * </p>
+ * <ul>
+ * <li>{@code E;<eventId>;<actionStatus>;<length>\n<command>}: server event.</li>
+ * <li>{@code C;<action>;<length>\n<command>}: command. A command table is a
+ * sequence of these records.</li>
+ * <li>{@code R;<status>;<length>\n<message>}: operation result.</li>
+ * <li>{@code X;<errorId>;<length>\n<message>}: error.</li>
+ * <li>{@code A;<classroom>;0\n} followed by an {@code E} or {@code X} record,
+ * or by {@code N;0\n} if nothing is pending: one result of a status batch.</li>
+ * </ul>
+ * <p>
+ * The events are encoded when their batch is committed, so a poll only copies
+ * the cached bytes. An encoding is dropped once served, since an event is only
+ * served once.
+ * </p>
+ */
+@Component
+public class AgentWireEncoder
+{
+	/**
+	 * Media type of the compact wire format.
+	 */
+	public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(Constants.AGENT_WIRE_MEDIA_TYPE);
+
+	/**
+	 * Maximum number of events kept encoded.
+	 */
+	private static final int MAX_CACHED_EVENTS = 4096;
+
+	/**
+	 * Encoded pending events indexed by event ID, oldest dropped first.
+	 */
+	private final Map<Long, EncodedEvent> encodedEvents = Collections.synchronizedMap(
+			new LinkedHashMap<Long, EncodedEvent>(256, 0.75f, false)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, EncodedEvent> eldest)
+				{
+					return this.size() > MAX_CACHED_EVENTS;
+				}
+			});
+
+	/**
+	 * Encodes the pending events of a committed batch before they are polled.
+	 *
+	 * @param event The batch creation event.
+	 */
+	@TransactionalEventListener
+	public void onServerEventBatchCreated(ServerEventBatchCreatedEvent event)
+	{
+		for (ServerEventHistory serverEvent : event.getServerEvents()) {
+			if (Constants.EVENT_STATUS_PENDING.equals(serverEvent.getActionStatus())) {
+				this.encodedEvents.put(serverEvent.getEventId(), new EncodedEvent(serverEvent.getActionStatus(),
+						this.encodeEvent(serverEvent.getEventId(), serverEvent.getActionStatus(),
+								serverEvent.getCommand())));
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether a response body can be encoded. Only the bodies of the
+	 * agent endpoints are claimed, so any other body asked in this format gets a
+	 * 406 Not Acceptable response.
+	 *
+	 * @param type The class of the body.
+	 * @return True if the body can be encoded.
+	 */
+	public boolean canEncode(Class<?> type)
+	{
+		return SimplifiedServerEventDto.class.isAssignableFrom(type) || CommandDto.class.isAssignableFrom(type)
+				|| ResponseDto.class.isAssignableFrom(type) || ErrorMapDto.class.isAssignableFrom(type)
+				|| CommandTableDto.class.isAssignableFrom(type)
+				|| AgentStatusBatchResultListDto.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * Encodes a response body of an agent endpoint.
+	 *
+	 * @param body The body.
+	 * @return The encoded body.
+	 * @throws IllegalArgumentException If the body cannot be encoded.
+	 */
+	public byte[] encode(Object body)
+	{
+		if (body instanceof SimplifiedServerEventDto serverEvent) {
+			return this.encodeServedEvent(serverEvent);
+		}
+		if (body instanceof CommandDto command) {
+			return this.record(command.getCommand(), "C", command.getAction());
+		}
+		if (body instanceof ResponseDto response) {
+			return this.record(response.getMessage(), "R", response.getStatus());
+		}
+		if (body instanceof ErrorMapDto error) {
+			return this.encodeError(error);
+		}
+		if (body instanceof AgentStatusBatchResultListDto results) {
+			return this.encodeBatchResults(results);
+		}
+		if (body instanceof CommandTableDto commands) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			commands.forEach(command -> output.writeBytes(this.encode(command)));
+			return output.toByteArray();
+		}
+		throw new IllegalArgumentException("Type " + body.getClass().getName() + " has no agent wire encoding.");
+	}
+
+	/**
+	 * Returns the cached encoding of an event being served, or encodes it if it
+	 * is not cached (e.g. it was created before the last restart).
+	 */
+	private byte[] encodeServedEvent(SimplifiedServerEventDto serverEvent)
+	{
+		EncodedEvent cached = this.encodedEvents.remove(serverEvent.getEventId());
+
+		if (cached != null && cached.actionStatus().equals(serverEvent.getActionStatus())) {
+			return cached.bytes();
+		}
+		return this.encodeEvent(serverEvent.getEventId(), serverEvent.getActionStatus(),
+				serverEvent.getCommandInstruction());
+	}
+
+	private byte[] encodeEvent(Long eventId, String actionStatus, String command)
+	{
+		return this.record(command, "E", eventId, actionStatus);
+	}
+
+	private byte[] encodeError(Map<?, ?> error)
+	{
+		Object message = error.get("message");
+		return this.record(message == null ? null : message.toString(), "X", error.get("id"));
+	}
+
+	private byte[] encodeBatchResults(List<AgentStatusBatchResultDto> results)
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		for (AgentStatusBatchResultDto result : results) {
+			output.writeBytes(this.record(null, "A", result.getClassroom()));
+
+			if (result.getError() != null) {
+				output.writeBytes(this.encodeError(result.getError()));
+			} else if (result.getEvent() != null) {
+				output.writeBytes(this.encodeServedEvent(result.getEvent()));
+			} else {
+				output.writeBytes(this.record(null, "N"));
+			}
+		}
+		return output.toByteArray();
+	}
+
+	/**
+	 * Builds a record: the type, the escaped header fields, the payload length,
+	 * a line break and the payload.
+	 */
+	private byte[] record(String payload, String type, Object... fields)
+	{
+		byte[] payloadBytes = payload == null ? new byte[0] : payload.getBytes(StandardCharsets.UTF_8);
+
+		StringBuilder header = new StringBuilder(type);
+		for (Object field : fields) {
+			header.append(';').append(this.escapeField(String.valueOf(field)));
+		}
+		byte[] headerBytes = header.append(';').append(payloadBytes.length).append('\n').toString()
+				.getBytes(StandardCharsets.UTF_8);
+
+		byte[] recordBytes = new byte[headerBytes.length + payloadBytes.length];
+		System.arraycopy(headerBytes, 0, recordBytes, 0, headerBytes.length);
+		System.arraycopy(payloadBytes, 0, recordBytes, headerBytes.length, payloadBytes.length);
+		return recordBytes;
+	}
+
+	/**
+	 * Escapes the characters that would break the framing of a header field
+	 * (classrooms and actions are free text).
+	 */
+	private String escapeField(String field)
+	{
+		StringBuilder escaped = new StringBuilder(field.length());
+
+		for (char character : field.toCharArray()) {
+			switch (character) {
+				case '%' -> escaped.append("%25");
+				case ';' -> escaped.append("%3B");
+				case '\n' -> escaped.append("%0A");
+				case '\r' -> escaped.append("%0D");
+				default -> escaped.append(character);
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * An encoded event with the status it was encoded with.
+	 *
+	 * @param actionStatus The status of the event when encoded.
+	 * @param bytes        The encoded event.
+	 */
+	private record EncodedEvent(String actionStatus, byte[] bytes)
+	{
+	}
+}
@@ -0,0 +1,306 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.CommandCatalogStatsDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.repositories.ICommandRepository;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
+import es.iesjandula.reaktor.projectors_server.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-only, in-memory copy of the command table.
+ * <p>
+ * The catalog is an immutable snapshot holding a forward index (model, action)
+ * and a reverse index (model, response code) over the registered commands. The
+ * agent round trips resolve their commands here instead of querying the
+ * database.
+ * </p>
+ * <p>
+ * Models, actions and codes are matched ignoring case, as the database
+ * collation did when they were looked up with a query.
+ * </p>
+ * <p>
+ * The command table only changes through the CSV import and the admin delete
+ * endpoints, which call {@link #invalidate()}. The next lookup after the change
+ * is committed loads a new snapshot and swaps it atomically.
+ * </p>
+ */
+@Slf4j
+@Component
+public class CommandCatalog
+{
+	/**
+	 * Separator of the fields hashed in the fingerprints.
+	 */
+	private static final char FIELD_SEPARATOR = '\u001F';
+
+	@Autowired
+	private ICommandRepository commandRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Transaction used to load the snapshot, isolated from the caller's one so it
+	 * always reads the last committed commands.
+	 */
+	private TransactionTemplate loadTransaction;
+
+	/**
+	 * The current snapshot, null until the first lookup.
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Set when the command table changes, forces a reload on the next lookup.
+	 */
+	private volatile boolean stale = true;
+
+	private final AtomicLong versionSequence = new AtomicLong();
+
+	private final LongAdder actionLookupHits = new LongAdder();
+
+	private final LongAdder actionLookupMisses = new LongAdder();
+
+	private final LongAdder codeLookupHits = new LongAdder();
+
+	private final LongAdder codeLookupMisses = new LongAdder();
+
+	@PostConstruct
+	public void init()
+	{
+		this.loadTransaction = new TransactionTemplate(this.transactionManager);
+		this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.loadTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * Finds the command that performs an action on a projector model.
+	 *
+	 * @param modelName The name of the projector model.
+	 * @param action    The name of the action.
+	 * @return The command, or an empty optional if it is not registered.
+	 */
+	public Optional<CommandDto> findByModelNameAndAction(String modelName, String action)
+	{
+		Optional<CommandDto> command = Optional.ofNullable(this.getSnapshot().byAction(modelName, action));
+		(command.isPresent() ? this.actionLookupHits : this.actionLookupMisses).increment();
+		return command;
+	}
+
+	/**
+	 * Finds the command of a projector model whose literal value matches a code
+	 * reported by a remote agent (status or response code).
+	 *
+	 * @param modelName The name of the projector model.
+	 * @param code      The code reported by the agent.
+	 * @return The command, or an empty optional if it is not registered.
+	 */
+	public Optional<CommandDto> findByModelNameAndCommand(String modelName, String code)
+	{
+		Optional<CommandDto> command = Optional.ofNullable(this.getSnapshot().byCode(modelName, code));
+		(command.isPresent() ? this.codeLookupHits : this.codeLookupMisses).increment();
+		return command;
+	}
+
+	/**
+	 * Returns every command of a projector model, ordered by action.
+	 *
+	 * @param modelName The name of the projector model.
+	 * @return The commands, empty if the model has none.
+	 */
+	public List<CommandDto> findByModelName(String modelName)
+	{
+		return this.getSnapshot().commandsByModel.getOrDefault(KeyUtils.normalize(modelName),
+				Collections.emptyList());
+	}
+
+	/**
+	 * Returns a fingerprint of the commands of a projector model, computed once
+	 * per snapshot. Unlike the version, it only changes when the commands of the
+	 * model change and it is the same after a restart, so remote agents can use
+	 * it to validate their cached commands.
+	 *
+	 * @param modelName The name of the projector model.
+	 * @return The fingerprint of the commands of the model.
+	 */
+	public String getModelFingerprint(String modelName)
+	{
+		Snapshot current = this.getSnapshot();
+		return current.fingerprintsByModel.computeIfAbsent(KeyUtils.normalize(modelName),
+				model -> fingerprint(model, current.commandsByModel.getOrDefault(model, Collections.emptyList())));
+	}
+
+	/**
+	 * Returns the version of the current snapshot. The version changes every
+	 * time the catalog is reloaded.
+	 *
+	 * @return The version of the catalog.
+	 */
+	public long getVersion()
+	{
+		return this.getSnapshot().version;
+	}
+
+	/**
+	 * Marks the catalog as outdated once the current transaction commits.
+	 */
+	public void invalidate()
+	{
+		TransactionUtils.afterCommit(() -> {
+			this.stale = true;
+			log.debug("Command catalog invalidated.");
+		});
+	}
+
+	/**
+	 * Builds the statistics of the catalog.
+	 *
+	 * @return The version, size and lookup counters of the catalog.
+	 */
+	public CommandCatalogStatsDto getStats()
+	{
+		Snapshot current = this.getSnapshot();
+
+		return new CommandCatalogStatsDto(current.version, current.size, this.actionLookupHits.sum(),
+				this.actionLookupMisses.sum(), this.codeLookupHits.sum(), this.codeLookupMisses.sum());
+	}
+
+	/**
+	 * Returns the current snapshot, reloading it first if it is outdated.
+	 *
+	 * @return The current snapshot.
+	 */
+	private Snapshot getSnapshot()
+	{
+		Snapshot current = this.snapshot;
+
+		if (!this.stale && current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (this.stale || this.snapshot == null) {
+				// Clear the flag before reading, an invalidation arriving meanwhile reloads again.
+				this.stale = false;
+				List<CommandDto> commands = this.loadTransaction.execute(status -> this.commandRepository.findAllCommandsAsDto());
+				this.snapshot = new Snapshot(this.versionSequence.incrementAndGet(), commands);
+
+				log.info("Command catalog loaded with {} commands (version {}).", commands.size(), this.snapshot.version);
+			}
+			return this.snapshot;
+		}
+	}
+
+	/**
+	 * Hashes the name of a model and its commands, in action order.
+	 *
+	 * @param modelName The name of the projector model.
+	 * @param commands  The commands of the model, ordered by action.
+	 * @return The fingerprint, URL-safe Base64 of the first 16 bytes of the hash.
+	 */
+	private static String fingerprint(String modelName, List<CommandDto> commands)
+	{
+		StringBuilder content = new StringBuilder(String.valueOf(modelName));
+		for (CommandDto command : commands) {
+			content.append(FIELD_SEPARATOR).append(command.getAction()).append(FIELD_SEPARATOR)
+					.append(command.getCommand());
+		}
+
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Immutable indexes built from a full read of the command table.
+	 */
+	private static final class Snapshot
+	{
+		private final long version;
+
+		private final int size;
+
+		private final Map<String, Map<String, CommandDto>> commandsByAction;
+
+		private final Map<String, Map<String, CommandDto>> commandsByCode;
+
+		private final Map<String, List<CommandDto>> commandsByModel;
+
+		/**
+		 * Fingerprints of the models, computed on first use.
+		 */
+		private final Map<String, String> fingerprintsByModel = new ConcurrentHashMap<>();
+
+		private Snapshot(long version, List<CommandDto> commands)
+		{
+			Map<String, Map<String, CommandDto>> byAction = new HashMap<>();
+			Map<String, Map<String, CommandDto>> byCode = new HashMap<>();
+			Map<String, List<CommandDto>> byModel = new HashMap<>();
+
+			for (CommandDto command : commands) {
+				byAction.computeIfAbsent(KeyUtils.normalize(command.getModelName()), model -> new HashMap<>())
+						.put(KeyUtils.normalize(command.getAction()), command);
+
+				CommandDto previous = byCode
+						.computeIfAbsent(KeyUtils.normalize(command.getModelName()), model -> new HashMap<>())
+						.putIfAbsent(KeyUtils.normalize(command.getCommand()), command);
+
+				if (previous != null) {
+					log.warn("Commands '{}' and '{}' of model '{}' share the same code, keeping '{}'.",
+							previous.getAction(), command.getAction(), command.getModelName(), previous.getAction());
+				}
+			}
+
+			byAction.forEach((model, actions) -> byModel.put(model, actions.values().stream()
+					.sorted(Comparator.comparing(CommandDto::getAction)).toList()));
+
+			byAction.replaceAll((model, actions) -> Collections.unmodifiableMap(actions));
+			byCode.replaceAll((model, codes) -> Collections.unmodifiableMap(codes));
+
+			this.version = version;
+			this.size = commands.size();
+			this.commandsByAction = Collections.unmodifiableMap(byAction);
+			this.commandsByCode = Collections.unmodifiableMap(byCode);
+			this.commandsByModel = Collections.unmodifiableMap(byModel);
+		}
+
+		private CommandDto byAction(String modelName, String action)
+		{
+			return this.commandsByAction.getOrDefault(KeyUtils.normalize(modelName), Collections.emptyMap())
+					.get(KeyUtils.normalize(action));
+		}
+
+		private CommandDto byCode(String modelName, String code)
+		{
+			return this.commandsByCode.getOrDefault(KeyUtils.normalize(modelName), Collections.emptyMap())
+					.get(KeyUtils.normalize(code));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.GeneralCountOverviewDto;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository.GeneralCountOverviewView;
+import es.iesjandula.reaktor.projectors_server.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cached counts of the general overview (models, actions, commands,
+ * projectors, floors and classrooms).
+ * <p>
+ * The counts only change when the CSV imports or the admin delete endpoints
+ * modify the projector and command tables, so they are computed once with a
+ * single query and kept in an immutable snapshot. The snapshot is rebuilt on
+ * the first request after {@link #invalidate()}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class GeneralOverviewSnapshot
+{
+	@Autowired
+	private IProjectorRepository projectorRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Transaction used to compute the snapshot, isolated from the caller's one so
+	 * it always reads the last committed data.
+	 */
+	private TransactionTemplate loadTransaction;
+
+	/**
+	 * The current counts, null until the first request.
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Set when the projector or command tables change, forces a rebuild on the
+	 * next request.
+	 */
+	private volatile boolean stale = true;
+
+	@PostConstruct
+	public void init()
+	{
+		this.loadTransaction = new TransactionTemplate(this.transactionManager);
+		this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.loadTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * Returns the counts of the general overview, rebuilding them first if they
+	 * are outdated.
+	 *
+	 * @return A new DTO with the current counts.
+	 */
+	public GeneralCountOverviewDto getOverview()
+	{
+		Snapshot current = this.getSnapshot();
+
+		return new GeneralCountOverviewDto(current.numberOfModels(), current.numberOfActions(),
+				current.numberOfCommands(), current.numberOfProjectors(), current.numberOfFloors(),
+				current.numberOfClassrooms());
+	}
+
+	/**
+	 * Marks the snapshot as outdated once the current transaction commits.
+	 */
+	public void invalidate()
+	{
+		TransactionUtils.afterCommit(() -> {
+			this.stale = true;
+			log.debug("General overview snapshot invalidated.");
+		});
+	}
+
+	private Snapshot getSnapshot()
+	{
+		Snapshot current = this.snapshot;
+
+		if (!this.stale && current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (this.stale || this.snapshot == null) {
+				this.stale = false;
+				GeneralCountOverviewView counts = this.loadTransaction
+						.execute(status -> this.projectorRepository.findGeneralCountOverview());
+
+				this.snapshot = new Snapshot(counts.getNumberOfModels(), counts.getNumberOfActions(),
+						counts.getNumberOfCommands(), counts.getNumberOfProjectors(), counts.getNumberOfFloors(),
+						counts.getNumberOfClassrooms());
+
+				log.info("General overview snapshot rebuilt: {}", this.snapshot);
+			}
+			return this.snapshot;
+		}
+	}
+
+	/**
+	 * Immutable counts of the general overview.
+	 */
+	private record Snapshot(Long numberOfModels, Long numberOfActions, Long numberOfCommands,
+			Long numberOfProjectors, Long numberOfFloors, Long numberOfClassrooms)
+	{
+	}
+}
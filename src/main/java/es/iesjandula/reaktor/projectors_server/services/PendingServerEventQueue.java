@@ -0,0 +1,290 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process dispatch queue holding the pending server events of every
+ * classroom.
+ * <p>
+ * The queue is filled when a batch of events is committed and consumed by the
+ * agents' polls, so a poll with nothing pending never reaches the database. The
+ * resulting SERVED/CANCELED transitions are written back asynchronously by
+ * {@link ServerEventStatusWriteBehind}.
+ * </p>
+ * <p>
+ * The queue only knows about the events created by this instance, so it must be
+ * disabled ({@code reaktor.projectors.dispatch-queue.enabled=false}) when
+ * several server instances share the same database.
+ * </p>
+ */
+@Slf4j
+@Component
+public class PendingServerEventQueue
+{
+	/**
+	 * Pending events per classroom, oldest first.
+	 */
+	private final Map<String, Deque<SimplifiedServerEventDto>> pendingEvents = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	private ServerEventStatusWriteBehind serverEventStatusWriteBehind;
+
+	@Value("${reaktor.projectors.dispatch-queue.enabled:true}")
+	private boolean enabled;
+
+	/**
+	 * Set once the queue has been rebuilt from the database.
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Keeps the rebuild from running while a poll is claimed from the database or
+	 * a batch is enqueued, so no event is served twice or lost while switching
+	 * from the database to the queue.
+	 */
+	private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Rebuilds the queue from the events left pending in the database.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild()
+	{
+		if (!this.enabled) {
+			log.info("In-memory dispatch queue disabled, polls will be served from the database.");
+			return;
+		}
+
+		List<ServerEventHistory> pending;
+
+		this.rebuildLock.writeLock().lock();
+		try {
+			pending = this.serverEventHistoryRepository
+					.findServerEventsByStatusOldestFirst(Constants.EVENT_STATUS_PENDING);
+
+			pending.forEach(this::enqueue);
+			this.ready = true;
+		} finally {
+			this.rebuildLock.writeLock().unlock();
+		}
+
+		log.info("In-memory dispatch queue rebuilt with {} pending server events.", pending.size());
+	}
+
+	/**
+	 * Enqueues the pending events of a committed batch. Runs before any other
+	 * listener so that woken agents find their events already queued. Batches
+	 * committed before the rebuild are skipped, the rebuild reads them from the
+	 * database.
+	 *
+	 * @param event The batch creation event.
+	 */
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@TransactionalEventListener
+	public void onServerEventBatchCreated(ServerEventBatchCreatedEvent event)
+	{
+		if (!this.enabled) {
+			return;
+		}
+
+		this.rebuildLock.readLock().lock();
+		try {
+			if (this.ready) {
+				event.getServerEvents().stream()
+						.filter(serverEvent -> Constants.EVENT_STATUS_PENDING.equals(serverEvent.getActionStatus()))
+						.forEach(this::enqueue);
+			}
+		} finally {
+			this.rebuildLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Claims the most recent pending event of a classroom. Every older pending
+	 * event of the classroom is canceled.
+	 * <p>
+	 * While the queue is disabled or not rebuilt yet, the claim is delegated to
+	 * the given database claim.
+	 * </p>
+	 *
+	 * @param classroom     The classroom of the requesting agent.
+	 * @param databaseClaim The claim to run when the queue is not active.
+	 * @return The event to serve, or an empty optional if nothing is pending.
+	 */
+	public Optional<SimplifiedServerEventDto> claim(String classroom,
+			Supplier<Optional<SimplifiedServerEventDto>> databaseClaim)
+	{
+		if (!this.enabled) {
+			return databaseClaim.get();
+		}
+
+		this.rebuildLock.readLock().lock();
+		try {
+			return this.ready ? this.claimFromQueue(classroom) : databaseClaim.get();
+		} finally {
+			this.rebuildLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Claims the most recent pending event of each of the given classrooms, as
+	 * {@link #claim(String, Supplier)} does for one.
+	 * <p>
+	 * While the queue is disabled or not rebuilt yet, the claim of every
+	 * classroom is delegated to the given database claim.
+	 * </p>
+	 *
+	 * @param classrooms    The classrooms of the requesting agent.
+	 * @param databaseClaim The claim of several classrooms to run when the queue
+	 *                      is not active.
+	 * @return The event to serve per classroom, only for the classrooms with
+	 *         something pending.
+	 */
+	public Map<String, SimplifiedServerEventDto> claimAll(Collection<String> classrooms,
+			Function<Collection<String>, Map<String, SimplifiedServerEventDto>> databaseClaim)
+	{
+		if (!this.enabled) {
+			return databaseClaim.apply(classrooms);
+		}
+
+		this.rebuildLock.readLock().lock();
+		try {
+			if (!this.ready) {
+				return databaseClaim.apply(classrooms);
+			}
+
+			Map<String, SimplifiedServerEventDto> claimed = new HashMap<>();
+			for (String classroom : classrooms) {
+				this.claimFromQueue(classroom).ifPresent(event -> claimed.put(classroom, event));
+			}
+			return claimed;
+
+		} finally {
+			this.rebuildLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a claimed event that could not be delivered to its agent to the
+	 * pending events of its classroom, so the next poll serves it again.
+	 * <p>
+	 * While the SERVED transition is still buffered it is simply dropped,
+	 * otherwise it is undone in the database by the given release. When the queue
+	 * is not active only the database release runs.
+	 * </p>
+	 *
+	 * @param classroom       The classroom of the agent.
+	 * @param serverEvent     The event that could not be delivered.
+	 * @param databaseRelease The update of the event back to pending, returning
+	 *                        the number of events updated.
+	 */
+	public void release(String classroom, SimplifiedServerEventDto serverEvent, Supplier<Integer> databaseRelease)
+	{
+		if (!this.enabled) {
+			databaseRelease.get();
+			return;
+		}
+
+		this.rebuildLock.readLock().lock();
+		try {
+			if (!this.ready) {
+				databaseRelease.get();
+				return;
+			}
+
+			if (!this.serverEventStatusWriteBehind.discard(serverEvent.getEventId(), Constants.EVENT_STATUS_SERVED)) {
+				// The transition was already taken by a flush, wait for it to be written before undoing it.
+				this.serverEventStatusWriteBehind.flush();
+				if (databaseRelease.get() == 0) {
+					return;
+				}
+			}
+
+			// Everything queued since the claim is newer, so the released event goes first.
+			this.pendingEvents.compute(classroom, (key, classroomEvents) -> {
+				Deque<SimplifiedServerEventDto> events = classroomEvents == null ? new ArrayDeque<>() : classroomEvents;
+				events.addFirst(serverEvent);
+				return events;
+			});
+
+		} finally {
+			this.rebuildLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Claims the most recent queued event of a classroom and records the
+	 * resulting transitions in the write-behind buffer.
+	 *
+	 * @param classroom The classroom of the requesting agent.
+	 * @return The event to serve, or an empty optional if nothing is pending.
+	 */
+	private Optional<SimplifiedServerEventDto> claimFromQueue(String classroom)
+	{
+		Deque<SimplifiedServerEventDto> classroomEvents = this.pendingEvents.remove(classroom);
+
+		if (classroomEvents == null || classroomEvents.isEmpty()) {
+			return Optional.empty();
+		}
+
+		SimplifiedServerEventDto mostRecentEvent = classroomEvents.pollLast();
+		this.serverEventStatusWriteBehind.record(mostRecentEvent.getEventId(), Constants.EVENT_STATUS_SERVED);
+
+		for (SimplifiedServerEventDto canceledEvent : classroomEvents) {
+			this.serverEventStatusWriteBehind.record(canceledEvent.getEventId(), Constants.EVENT_STATUS_CANCELED);
+		}
+
+		return Optional.of(mostRecentEvent);
+	}
+
+	/**
+	 * Adds a pending history record to the queue of its classroom.
+	 *
+	 * @param serverEvent The pending history record.
+	 */
+	private void enqueue(ServerEventHistory serverEvent)
+	{
+		SimplifiedServerEventDto simpleEvent = new SimplifiedServerEventDto(serverEvent.getEventId(),
+				serverEvent.getCommand(), serverEvent.getActionStatus());
+
+		this.pendingEvents.compute(serverEvent.getClassroom(), (classroom, classroomEvents) -> {
+			Deque<SimplifiedServerEventDto> events = classroomEvents == null ? new ArrayDeque<>() : classroomEvents;
+
+			// A batch committed while rebuilding may already be in the queue.
+			if (events.stream().noneMatch(queued -> queued.getEventId().equals(simpleEvent.getEventId()))) {
+				events.addLast(simpleEvent);
+			}
+			return events;
+		});
+	}
+}
@@ -0,0 +1,169 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.utils.KeyUtils;
+import es.iesjandula.reaktor.projectors_server.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory registry of the installed projectors, indexed by classroom.
+ * <p>
+ * Serves the model, floor and status of a projector to the agent round trips
+ * without querying the projector table. The registry is loaded on the first
+ * lookup and reloaded after {@link #invalidate()} once the projector import or
+ * the admin delete endpoints commit their changes. Status changes are applied
+ * through {@link #updateStatus(String, String)} after the status is written to
+ * the database.
+ * </p>
+ * <p>
+ * Classrooms are matched ignoring case, as the database collation did when
+ * they were looked up with a query. {@link #resolveClassroom(String)} gives
+ * the stored spelling, which the agent round trips use as their key.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ProjectorRegistry
+{
+	@Autowired
+	private IProjectorRepository projectorRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Transaction used to load the registry, isolated from the caller's one so it
+	 * always reads the last committed projectors.
+	 */
+	private TransactionTemplate loadTransaction;
+
+	/**
+	 * Projectors indexed by lower-case classroom, null until the first lookup. The entries
+	 * are never modified, a status change replaces the entry.
+	 */
+	private volatile Map<String, ProjectorInfoDto> projectors;
+
+	/**
+	 * Set when the projector table changes, forces a reload on the next lookup.
+	 */
+	private volatile boolean stale = true;
+
+	@PostConstruct
+	public void init()
+	{
+		this.loadTransaction = new TransactionTemplate(this.transactionManager);
+		this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.loadTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * Finds the projector installed in a classroom. The returned DTO is shared and
+	 * must not be modified.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @return The model, floor and status of the projector, or an empty optional
+	 *         if there is no projector in the classroom.
+	 */
+	public Optional<ProjectorInfoDto> findByClassroom(String classroom)
+	{
+		return Optional.ofNullable(this.getProjectors().get(KeyUtils.normalize(classroom)));
+	}
+
+	/**
+	 * Returns the classroom as it is stored, whatever the case it was received
+	 * with.
+	 *
+	 * @param classroom The classroom received from a remote agent.
+	 * @return The stored classroom, or the received one if there is no projector
+	 *         in the classroom.
+	 */
+	public String resolveClassroom(String classroom)
+	{
+		return this.findByClassroom(classroom).map(ProjectorInfoDto::getClassroom).orElse(classroom);
+	}
+
+	/**
+	 * Returns the model of the projector installed in a classroom.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @return The model name, or null if there is no projector in the classroom.
+	 */
+	public String findModelNameByClassroom(String classroom)
+	{
+		return this.findByClassroom(classroom).map(ProjectorInfoDto::getModel).orElse(null);
+	}
+
+	/**
+	 * Applies a status change to the registry once the current transaction
+	 * commits.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @param status    The new status of the projector.
+	 */
+	public void updateStatus(String classroom, String status)
+	{
+		TransactionUtils.afterCommit(() -> {
+			synchronized (this) {
+				if (this.projectors != null) {
+					this.projectors.computeIfPresent(KeyUtils.normalize(classroom), (key, projector) -> new ProjectorInfoDto(
+							projector.getModel(), projector.getClassroom(), projector.getFloorname(), status));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Marks the registry as outdated once the current transaction commits.
+	 */
+	public void invalidate()
+	{
+		TransactionUtils.afterCommit(() -> {
+			this.stale = true;
+			log.debug("Projector registry invalidated.");
+		});
+	}
+
+	/**
+	 * Returns the registered projectors, reloading them first if they are
+	 * outdated.
+	 *
+	 * @return The projectors indexed by classroom.
+	 */
+	private Map<String, ProjectorInfoDto> getProjectors()
+	{
+		Map<String, ProjectorInfoDto> current = this.projectors;
+
+		if (!this.stale && current != null) {
+			return current;
+		}
+
+		// Status updates wait for the reload so that none of them is lost.
+		synchronized (this) {
+			if (this.stale || this.projectors == null) {
+				this.stale = false;
+				List<ProjectorInfoDto> projectorList = this.loadTransaction
+						.execute(status -> this.projectorRepository.findAllProjectorsAsDto());
+
+				Map<String, ProjectorInfoDto> loaded = new ConcurrentHashMap<>();
+				projectorList.forEach(projector -> loaded.put(KeyUtils.normalize(projector.getClassroom()), projector));
+				this.projectors = loaded;
+
+				log.info("Projector registry loaded with {} projectors.", loaded.size());
+			}
+			return this.projectors;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.utils.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalescing buffer for the lamp statuses reported by the remote agents.
+ * <p>
+ * A report is only buffered when it differs from the last known status of the
+ * projector, and only the latest status per classroom is kept. The buffer is
+ * flushed on a short interval with one UPDATE per distinct status, after which
+ * the {@link ProjectorRegistry} is updated.
+ * </p>
+ * <p>
+ * Each buffered status remembers the stored status it was compared with, and
+ * the UPDATE only applies to the projectors still in that status. An event
+ * batch that writes TURNING_ON/TURNING_OFF after the report is therefore never
+ * overwritten by a flush already in progress.
+ * </p>
+ * <p>
+ * Until the flush, the buffered status is the current one: the dashboard and
+ * the event creation read it through {@link #getPendingStatus(String)}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ProjectorStatusBuffer
+{
+	/**
+	 * Statuses waiting to be written, indexed by classroom.
+	 */
+	private final Map<String, PendingStatus> pendingStatuses = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IProjectorRepository projectorRepository;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	/**
+	 * Records the status reported for a projector.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @param status    The reported status.
+	 * @return true if the status changed and will be written, false if it was
+	 *         already the current status.
+	 */
+	public boolean report(String classroom, String status)
+	{
+		PendingStatus pending = this.pendingStatuses.get(classroom);
+
+		String storedStatus = pending != null ? pending.storedStatus() : this.projectorRegistry
+				.findByClassroom(classroom).map(projector -> projector.getStatus()).orElse(null);
+		String currentStatus = pending != null ? pending.status() : storedStatus;
+
+		if (status.equals(currentStatus)) {
+			return false;
+		}
+
+		if (status.equals(storedStatus)) {
+			// Back to the stored status, there is nothing left to write.
+			this.pendingStatuses.remove(classroom, pending);
+		} else {
+			this.pendingStatuses.put(classroom, new PendingStatus(status, storedStatus));
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the status reported for a projector that is not written yet.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @return The buffered status, or an empty optional if there is none.
+	 */
+	public Optional<String> getPendingStatus(String classroom)
+	{
+		return Optional.ofNullable(this.pendingStatuses.get(classroom)).map(PendingStatus::status);
+	}
+
+	/**
+	 * Drops the buffered status of a projector once the current transaction
+	 * commits. Used when the status is written directly by another operation,
+	 * so the flush does not overwrite it.
+	 *
+	 * @param classroom The classroom of the projector.
+	 */
+	public void discard(String classroom)
+	{
+		TransactionUtils.afterCommit(() -> this.pendingStatuses.remove(classroom));
+	}
+
+	/**
+	 * Writes the buffered statuses to the database.
+	 */
+	@Scheduled(fixedDelayString = "${reaktor.projectors.status-buffer.flush-interval:1000}")
+	@PreDestroy
+	public void flush()
+	{
+		if (this.pendingStatuses.isEmpty()) {
+			return;
+		}
+
+		// Group the classrooms by their stored and new status.
+		Map<String, PendingStatus> drained = new HashMap<>(this.pendingStatuses);
+		Map<PendingStatus, List<String>> classroomsByTransition = new HashMap<>();
+		drained.forEach((classroom, pending) -> classroomsByTransition
+				.computeIfAbsent(pending, key -> new ArrayList<>()).add(classroom));
+
+		for (Map.Entry<PendingStatus, List<String>> entry : classroomsByTransition.entrySet()) {
+			PendingStatus transition = entry.getKey();
+
+			try {
+				int updated = this.projectorRepository.updateProjectorsStatus(entry.getValue(),
+						transition.storedStatus(), transition.status());
+
+				log.debug("Status buffer: {} of {} projectors updated from '{}' to '{}'.", updated,
+						entry.getValue().size(), transition.storedStatus(), transition.status());
+
+				if (updated == entry.getValue().size()) {
+					entry.getValue().forEach(classroom -> this.projectorRegistry.updateStatus(classroom, transition.status()));
+				} else {
+					// Some projectors changed status meanwhile, the registry is reloaded from the table.
+					this.projectorRegistry.invalidate();
+				}
+
+				// Keep any newer status reported during the flush.
+				entry.getValue().forEach(classroom -> this.pendingStatuses.remove(classroom, transition));
+
+			} catch (Exception e) {
+				// The statuses stay in the buffer, the next flush retries them.
+				log.error("Status buffer flush failed for {} projectors, retrying later.", entry.getValue().size(), e);
+			}
+		}
+	}
+
+	/**
+	 * A buffered status and the stored status it was reported against.
+	 *
+	 * @param status       The reported status.
+	 * @param storedStatus The status of the projector when it was reported.
+	 */
+	private record PendingStatus(String status, String storedStatus)
+	{
+	}
+}
@@ -0,0 +1,261 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorUsageDto;
+import es.iesjandula.reaktor.projectors_server.entities.ProjectorUsage;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorUsageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Running lamp usage of every projector, fed by the lamp statuses reported by
+ * the remote agents.
+ * <p>
+ * While the lamp is reported on, the time between consecutive reports is added
+ * to the projector, up to the configured maximum gap: an agent that stops
+ * reporting does not keep adding time. The accumulators are loaded at startup
+ * and checkpointed periodically to the {@code projector_usage} table, so the
+ * usage is read from memory without scanning the event history.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ProjectorUsageAccumulator
+{
+	private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+	/**
+	 * Accumulators indexed by classroom.
+	 */
+	private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IProjectorUsageRepository projectorUsageRepository;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	/**
+	 * Maximum time in milliseconds between two reports of a lit lamp that is
+	 * counted as usage.
+	 */
+	@Value("${reaktor.projectors.usage.max-report-gap:600000}")
+	private long maxReportGap;
+
+	/**
+	 * Set once the accumulators have been loaded from the database.
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Loads the last checkpoint of every projector.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void load()
+	{
+		if (this.ready) {
+			return;
+		}
+
+		List<ProjectorUsage> checkpoints;
+
+		try {
+			checkpoints = this.projectorUsageRepository.findAll();
+		} catch (DataAccessException e) {
+			log.error("Projector usage could not be loaded, retrying on the next checkpoint.", e);
+			return;
+		}
+
+		for (ProjectorUsage checkpoint : checkpoints) {
+			this.usages.computeIfAbsent(checkpoint.getClassroom(), key -> new Usage(0, 0, false, null))
+					.addCheckpoint(checkpoint);
+		}
+
+		this.ready = true;
+		log.info("Projector usage loaded for {} projectors.", checkpoints.size());
+	}
+
+	/**
+	 * Records a lamp status reported by the agent of a projector.
+	 *
+	 * @param classroom The classroom of the projector.
+	 * @param lampOn    Whether the lamp is reported on.
+	 */
+	public void report(String classroom, boolean lampOn)
+	{
+		this.usages.computeIfAbsent(classroom, key -> new Usage(0, 0, false, null))
+				.report(lampOn, LocalDateTime.now(), this.maxReportGap);
+	}
+
+	/**
+	 * Returns the usage of every existing projector, highest lamp time first.
+	 *
+	 * @return The usage of the projectors.
+	 */
+	public List<ProjectorUsageDto> getUsages()
+	{
+		return this.usages.entrySet().stream()
+				.map(entry -> this.toDto(entry.getKey(), entry.getValue()))
+				.flatMap(Optional::stream)
+				.sorted(Comparator.comparingDouble(ProjectorUsageDto::getLampHours).reversed()
+						.thenComparing(ProjectorUsageDto::getClassroom))
+				.toList();
+	}
+
+	/**
+	 * Writes the accumulators changed since the last checkpoint.
+	 */
+	@Scheduled(fixedDelayString = "${reaktor.projectors.usage.checkpoint-interval:60000}")
+	@PreDestroy
+	public void checkpoint()
+	{
+		// Until loaded, writing would overwrite the stored totals.
+		if (!this.ready) {
+			this.load();
+			if (!this.ready) {
+				return;
+			}
+		}
+
+		int written = 0;
+
+		for (Map.Entry<String, Usage> entry : this.usages.entrySet()) {
+			Optional<ProjectorUsage> snapshot = entry.getValue().takeDirtySnapshot(entry.getKey());
+
+			if (snapshot.isEmpty()) {
+				continue;
+			}
+
+			ProjectorUsage usage = snapshot.get();
+			try {
+				int rows = this.projectorUsageRepository.upsertUsage(usage.getClassroom(), usage.getLampMillis(),
+						usage.getLampOns(), usage.isLampOn(), usage.getLastReport());
+
+				if (rows == 0) {
+					// The projector was deleted.
+					this.usages.remove(entry.getKey(), entry.getValue());
+				} else {
+					written++;
+				}
+
+			} catch (DataAccessException e) {
+				entry.getValue().markDirty();
+				log.error("Usage checkpoint of projector '{}' failed, retrying later.", entry.getKey(), e);
+			}
+		}
+
+		if (written > 0) {
+			log.debug("Usage checkpoint: {} projectors written.", written);
+		}
+	}
+
+	private Optional<ProjectorUsageDto> toDto(String classroom, Usage usage)
+	{
+		Optional<ProjectorInfoDto> projector = this.projectorRegistry.findByClassroom(classroom);
+
+		if (projector.isEmpty()) {
+			return Optional.empty();
+		}
+
+		ProjectorUsage current = usage.snapshot(classroom);
+		return Optional.of(new ProjectorUsageDto(classroom, projector.get().getFloorname(),
+				projector.get().getModel(), current.getLampMillis() / MILLIS_PER_HOUR, current.getLampOns(),
+				current.isLampOn(), current.getLastReport()));
+	}
+
+	/**
+	 * Accumulated lamp usage of a projector.
+	 */
+	private static final class Usage
+	{
+		private long lampMillis;
+
+		private long lampOns;
+
+		private boolean lampOn;
+
+		private LocalDateTime lastReport;
+
+		/**
+		 * Set when the usage changed since the last checkpoint.
+		 */
+		private boolean dirty;
+
+		private Usage(long lampMillis, long lampOns, boolean lampOn, LocalDateTime lastReport)
+		{
+			this.lampMillis = lampMillis;
+			this.lampOns = lampOns;
+			this.lampOn = lampOn;
+			this.lastReport = lastReport;
+		}
+
+		private synchronized void report(boolean reportedOn, LocalDateTime now, long maxReportGap)
+		{
+			// The time since the previous report counts if the lamp was already on.
+			if (this.lampOn && this.lastReport != null) {
+				long elapsed = Duration.between(this.lastReport, now).toMillis();
+				this.lampMillis += Math.max(0, Math.min(elapsed, maxReportGap));
+			}
+
+			if (reportedOn && !this.lampOn) {
+				this.lampOns++;
+			}
+
+			this.lampOn = reportedOn;
+			this.lastReport = now;
+			this.dirty = true;
+		}
+
+		/**
+		 * Adds the stored totals to the usage accumulated since startup. The
+		 * status of a report received before the load is newer than the stored
+		 * one.
+		 */
+		private synchronized void addCheckpoint(ProjectorUsage checkpoint)
+		{
+			this.lampMillis += checkpoint.getLampMillis();
+			this.lampOns += checkpoint.getLampOns();
+
+			if (this.lastReport == null) {
+				this.lampOn = checkpoint.isLampOn();
+				this.lastReport = checkpoint.getLastReport();
+			}
+		}
+
+		private synchronized ProjectorUsage snapshot(String classroom)
+		{
+			return new ProjectorUsage(classroom, this.lampMillis, this.lampOns, this.lampOn, this.lastReport);
+		}
+
+		private synchronized Optional<ProjectorUsage> takeDirtySnapshot(String classroom)
+		{
+			if (!this.dirty) {
+				return Optional.empty();
+			}
+
+			this.dirty = false;
+			return Optional.of(this.snapshot(classroom));
+		}
+
+		private synchronized void markDirty()
+		{
+			this.dirty = true;
+		}
+	}
+}
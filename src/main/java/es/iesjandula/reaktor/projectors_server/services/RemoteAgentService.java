@@ -0,0 +1,395 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusBatchResultDto;
+import es.iesjandula.reaktor.projectors_server.dtos.AgentStatusReportDto;
+import es.iesjandula.reaktor.projectors_server.dtos.CommandDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ProjectorInfoDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ResponseDto;
+import es.iesjandula.reaktor.projectors_server.dtos.SimplifiedServerEventDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service that groups the operations requested by the remote agents (ESP32).
+ * <p>
+ * These operations are shared by the polling endpoint, the long-poll endpoint
+ * and any other channel used by the agents, so they live outside the
+ * controllers to be reachable through the transactional proxy from any thread.
+ * </p>
+ */
+@Slf4j
+@Service
+public class RemoteAgentService
+{
+
+	@Autowired
+	private CommandCatalog commandCatalog;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	private ProjectorStatusBuffer projectorStatusBuffer;
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	private PendingServerEventQueue pendingServerEventQueue;
+
+	@Autowired
+	private ServerEventStatusCounters serverEventStatusCounters;
+
+	@Autowired
+	private ProjectorUsageAccumulator projectorUsageAccumulator;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Updates the power status (ON/OFF) of the projector located in the given
+	 * classroom based on the status code reported by its remote agent. Only
+	 * actual changes are buffered and written by {@link ProjectorStatusBuffer}.
+	 *
+	 * @param projectorClassroom The classroom where the projector is located.
+	 * @param projectorStatus    The raw status code reported by the projector.
+	 * @throws ProjectorServerException If the projector does not exist or the
+	 *                                  status code is not a registered lamp
+	 *                                  status.
+	 */
+	public void updateProjectorStatus(String projectorClassroom, String projectorStatus)
+			throws ProjectorServerException
+	{
+		// Recupera el proyector o lanza error si no existe.
+		ProjectorInfoDto projector = this.projectorRegistry.findByClassroom(projectorClassroom).orElseThrow(()
+				-> new ProjectorServerException(494, "ERROR: There are no projectors assigned to this classroom.")
+		);
+
+		log.info(projector.toString());
+
+		// Build the requesting model's command entity for comparison.
+		CommandDto statusCommand = this.commandCatalog.findByModelNameAndCommand(projector.getModel(), projectorStatus)
+				.orElseThrow(()
+						-> new ProjectorServerException(404,"El codigo de estado de la petición no corresponden a ningun comando registrado.")
+						);
+
+		log.info(statusCommand.toString());
+
+		// Actualiza estado encendido/apagado del proyector.
+		String newStatus;
+
+		if (statusCommand.getAction().equalsIgnoreCase(Constants.LAMP_ON)) {
+
+			newStatus = Constants.PROJECTOR_ON;
+
+		} else if (statusCommand.getAction().equalsIgnoreCase(Constants.LAMP_OFF)) {
+
+			newStatus = Constants.PROJECTOR_OFF;
+
+		} else {
+
+			throw new ProjectorServerException(499, "Error al registrar el estado del proyector. Estado desconocido.");
+
+		}
+
+		log.info(newStatus);
+
+		// Solo se escribe si el estado cambia, el buffer lo persiste en lote.
+		this.projectorStatusBuffer.report(projector.getClassroom(), newStatus);
+
+		// Cada informe de estado alimenta el uso acumulado de la lampara.
+		this.projectorUsageAccumulator.report(projector.getClassroom(), Constants.PROJECTOR_ON.equals(newStatus));
+	}
+
+	/**
+	 * Claims the most recent pending server event of a classroom.
+	 * <p>
+	 * The most recent pending event is marked as served and every older pending
+	 * event of the same classroom is canceled, since it should no longer be
+	 * executed by the projector.
+	 * </p>
+	 *
+	 * <p>
+	 * Polls are served from the in-memory dispatch queue when it is active, so
+	 * a classroom with nothing pending never reaches the database. Otherwise the
+	 * pending events are claimed directly from the history table.
+	 * </p>
+	 *
+	 * @param projectorClassroom The classroom whose pending events are claimed.
+	 * @return The simplified event to send to the remote agent, or an empty
+	 *         optional if there are no pending events for the classroom.
+	 */
+	public Optional<SimplifiedServerEventDto> claimNextServerEvent(String projectorClassroom)
+	{
+		// La cola esta indexada por el aula tal y como esta guardada.
+		String classroom = this.projectorRegistry.resolveClassroom(projectorClassroom);
+
+		return this.pendingServerEventQueue.claim(classroom, () -> this.transactionTemplate
+				.execute(status -> this.claimNextServerEventFromDatabase(classroom)));
+	}
+
+	/**
+	 * Claims the most recent pending server event of a classroom from the
+	 * history table. Must run inside a transaction.
+	 * <p>
+	 * The claim locks the most recent pending event, cancels every other pending
+	 * event of the classroom and marks the locked one as served, so its cost does
+	 * not depend on how many events piled up and two concurrent polls never serve
+	 * the same event.
+	 * </p>
+	 *
+	 * @param projectorClassroom The classroom whose pending events are claimed.
+	 * @return The simplified event to send to the remote agent, or an empty
+	 *         optional if there are no pending events for the classroom.
+	 */
+	private Optional<SimplifiedServerEventDto> claimNextServerEventFromDatabase(String projectorClassroom)
+	{
+		// Evento servidor pendiente mas reciente, bloqueado hasta el fin de la transaccion.
+		Optional<ServerEventHistory> mostRecentEventOptional = this.serverEventHistoryRepository
+				.findFirstByClassroomAndActionStatusOrderByDateTimeDescEventIdDesc(projectorClassroom,
+						Constants.EVENT_STATUS_PENDING);
+
+		if (mostRecentEventOptional.isEmpty()) {
+			return Optional.empty();
+		}
+
+		ServerEventHistory mostRecentEvent = mostRecentEventOptional.get();
+
+		// Configura evento simplificado.
+		SimplifiedServerEventDto simpleEvent = new SimplifiedServerEventDto();
+		simpleEvent.setActionStatus(mostRecentEvent.getActionStatus());
+		simpleEvent.setCommandInstruction(mostRecentEvent.getCommand());
+		simpleEvent.setEventId(mostRecentEvent.getEventId());
+
+		// Los otros eventos en pendiente ya no deberan ser servidos.
+		int canceled = this.serverEventHistoryRepository.updateOtherServerEventsStatusByClassroom(projectorClassroom,
+				mostRecentEvent.getEventId(), Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_CANCELED);
+
+		int served = this.serverEventHistoryRepository.updateServerEventsStatus(List.of(mostRecentEvent.getEventId()),
+				Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_SERVED);
+
+		this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_CANCELED, canceled);
+		this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_SERVED, served);
+
+		log.debug("Server event {} claimed for classroom '{}', {} older pending events canceled.",
+				mostRecentEvent.getEventId(), projectorClassroom, canceled);
+
+		return Optional.of(simpleEvent);
+	}
+
+	/**
+	 * Puts back as pending a claimed server event that could not be delivered to
+	 * the remote agent, so it is served again on the next poll. An event already
+	 * answered or canceled in the meantime is left untouched.
+	 *
+	 * @param projectorClassroom The classroom of the event.
+	 * @param serverEvent        The event that could not be delivered.
+	 */
+	public void releaseServerEvent(String projectorClassroom, SimplifiedServerEventDto serverEvent)
+	{
+		this.pendingServerEventQueue.release(this.projectorRegistry.resolveClassroom(projectorClassroom), serverEvent, () -> {
+			int released = this.serverEventHistoryRepository.updateServerEventsStatus(
+					List.of(serverEvent.getEventId()), Constants.EVENT_STATUS_SERVED, Constants.EVENT_STATUS_PENDING);
+
+			this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_SERVED, Constants.EVENT_STATUS_PENDING, released);
+			return released;
+		});
+
+		log.warn("Server event {} of classroom '{}' could not be delivered and was put back as pending.",
+				serverEvent.getEventId(), projectorClassroom);
+	}
+
+	/**
+	 * Processes the lamp statuses reported by an agent that controls several
+	 * projectors and claims the next server event of each classroom.
+	 * <p>
+	 * Each status is applied as in a single poll. The claims of every classroom
+	 * whose status was accepted are then made at once: from the dispatch queue
+	 * when it is active, otherwise with one locking read and one update per
+	 * resulting status for the whole batch.
+	 * </p>
+	 *
+	 * @param reports The statuses reported, one per classroom.
+	 * @return The outcome of each report, in the same order.
+	 */
+	public List<AgentStatusBatchResultDto> processStatusBatch(List<AgentStatusReportDto> reports)
+	{
+		List<AgentStatusBatchResultDto> results = new ArrayList<>();
+		Set<String> classrooms = new LinkedHashSet<>();
+
+		for (AgentStatusReportDto report : reports) {
+			AgentStatusBatchResultDto result = new AgentStatusBatchResultDto(report.getClassroom(), null, null);
+
+			try {
+				if (report.getClassroom() == null || report.getProjectorStatus() == null) {
+					throw new ProjectorServerException(400, "ERROR: Classroom and projector status are required.");
+				}
+				// Las aulas se comparan tal y como estan guardadas, sin importar mayusculas.
+				String classroom = this.projectorRegistry.resolveClassroom(report.getClassroom());
+				if (classrooms.contains(classroom)) {
+					throw new ProjectorServerException(400, "ERROR: Classroom reported more than once in the batch.");
+				}
+
+				this.updateProjectorStatus(classroom, report.getProjectorStatus());
+				classrooms.add(classroom);
+
+			} catch (ProjectorServerException e) {
+				log.warn("Status report of classroom '{}' rejected: {}", report.getClassroom(), e.getMessage());
+				result.setError(e.getMapError());
+			}
+
+			results.add(result);
+		}
+
+		if (classrooms.isEmpty()) {
+			return results;
+		}
+
+		Map<String, SimplifiedServerEventDto> claimed = this.pendingServerEventQueue.claimAll(classrooms,
+				pendingClassrooms -> this.transactionTemplate
+						.execute(status -> this.claimNextServerEventsFromDatabase(pendingClassrooms)));
+
+		for (AgentStatusBatchResultDto result : results) {
+			if (result.getError() == null) {
+				result.setEvent(claimed.get(this.projectorRegistry.resolveClassroom(result.getClassroom())));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Claims the most recent pending server event of several classrooms from the
+	 * history table, canceling the older ones, as
+	 * {@link #claimNextServerEventFromDatabase(String)} does for one. Must run
+	 * inside a transaction.
+	 *
+	 * @param classrooms The classrooms whose pending events are claimed.
+	 * @return The simplified event to send per classroom, only for the
+	 *         classrooms with something pending.
+	 */
+	private Map<String, SimplifiedServerEventDto> claimNextServerEventsFromDatabase(Collection<String> classrooms)
+	{
+		// Eventos pendientes de todas las aulas, bloqueados y del mas reciente al mas antiguo.
+		List<ServerEventHistory> pendingEvents = this.serverEventHistoryRepository
+				.findServerEventsByClassroomsAndStatusForUpdate(classrooms, Constants.EVENT_STATUS_PENDING);
+
+		Map<String, SimplifiedServerEventDto> claimed = new HashMap<>();
+		List<Long> servedIds = new ArrayList<>();
+		List<Long> canceledIds = new ArrayList<>();
+
+		for (ServerEventHistory pendingEvent : pendingEvents) {
+			if (claimed.containsKey(pendingEvent.getClassroom())) {
+				canceledIds.add(pendingEvent.getEventId());
+			} else {
+				claimed.put(pendingEvent.getClassroom(), new SimplifiedServerEventDto(pendingEvent.getEventId(),
+						pendingEvent.getCommand(), pendingEvent.getActionStatus()));
+				servedIds.add(pendingEvent.getEventId());
+			}
+		}
+
+		int canceled = canceledIds.isEmpty() ? 0 : this.serverEventHistoryRepository
+				.updateServerEventsStatus(canceledIds, Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_CANCELED);
+
+		int served = servedIds.isEmpty() ? 0 : this.serverEventHistoryRepository
+				.updateServerEventsStatus(servedIds, Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_SERVED);
+
+		this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_CANCELED, canceled);
+		this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_PENDING, Constants.EVENT_STATUS_SERVED, served);
+
+		log.debug("Server events claimed for {} of {} classrooms, {} older pending events canceled.", served,
+				classrooms.size(), canceled);
+
+		return claimed;
+	}
+
+	/**
+	 * Updates the status of a server event based on the response code (RARC)
+	 * returned by the projector to its remote agent.
+	 *
+	 * @param eventId   the unique identifier of the server event to update
+	 * @param rarc      the response code received from the projector
+	 * @param classroom the classroom identifier where the projector is located
+	 * @return a response DTO describing the performed status change
+	 * @throws ProjectorServerException if the event ID, command, or status is
+	 *                                  invalid
+	 */
+	@Transactional
+	public ResponseDto updateServerEventStatus(String eventId, String rarc, String classroom)
+			throws ProjectorServerException
+	{
+		// Prepare the response object to send back the status and message.
+		ResponseDto response = new ResponseDto();
+		String message;
+		String eventNewStatus;
+
+		// Fetch the name of the model from the projector registry.
+		String modelName = this.projectorRegistry.findModelNameByClassroom(classroom);
+
+		// Build the requesting model's command entity for comparison.
+		CommandDto command = this.commandCatalog.findByModelNameAndCommand(modelName, rarc)
+				.orElseThrow(() -> new ProjectorServerException(404,
+						"El codigo de respuesta y modelo recibidos en la petición no corresponden a ningun comando registrado."));
+
+		// Configure the event new status based on code received.
+		eventNewStatus = command.getAction().equalsIgnoreCase(Constants.ACKNWOLEDGE_ACTION_NAME)
+				? Constants.EVENT_STATUS_EXECUTED
+				: Constants.EVENT_STATUS_ERROR;
+
+		log.info("Status to be assigned: {}", eventNewStatus);
+
+		// Validate that the new event status is part of the acceptable list.
+		if (!Constants.POSSIBLE_EVENT_STATUS.contains(eventNewStatus)) {
+			message = "Error updating event status: The selected status for the event does not exist.";
+			log.error(message);
+			throw new ProjectorServerException(499, message); // Error code for invalid event status.
+		}
+
+		// Convert eventId to Long
+		Long eventIdLong = Long.valueOf(eventId);
+
+		// Fetch the corresponding event from the database history.
+		ServerEventHistory serverEventEntity = this.serverEventHistoryRepository.findById(eventIdLong)
+				.orElseThrow(() -> {
+					String messagex = "The server event with ID '" + eventIdLong + "' does not exist.";
+					log.error(messagex);
+					return new ProjectorServerException(494, messagex); // Error code for event not found.
+				});
+
+		// Capture the current status of the event before updating it.
+		String oldStatus = serverEventEntity.getActionStatus();
+
+		// Update the event's status to the new status.
+		serverEventEntity.setActionStatus(eventNewStatus);
+
+		// Prepare a success message with the old and new status.
+		message = "Event with ID " + eventId + " successfully updated from " + oldStatus + " to " + eventNewStatus;
+		log.info(message); // Log successful event status update.
+
+		// Set the response status and message.
+		response.setStatus(Constants.RESPONSE_STATUS_SUCCESS);
+		response.setMessage(message);
+
+		this.serverEventHistoryRepository.saveAndFlush(serverEventEntity);
+		this.serverEventStatusCounters.transition(oldStatus, eventNewStatus, 1);
+
+		return response;
+	}
+}
@@ -0,0 +1,183 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import es.iesjandula.reaktor.projectors_server.dtos.ServerEventFanOutDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import es.iesjandula.reaktor.projectors_server.repositories.IProjectorRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service that creates the same server event for every projector matching a
+ * selector (floor, model, status or the whole building) with set-based
+ * statements.
+ * <p>
+ * The events are inserted with INSERT ... SELECT over the projector and command
+ * tables, so the number of statements does not depend on the number of
+ * projectors. The IDs of the new rows are reserved by moving forward the
+ * sequence tables Hibernate uses for {@code ServerEvent} and
+ * {@code ServerEventHistory}, past any block Hibernate may still be handing
+ * out.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ServerEventFanOutService
+{
+	@Autowired
+	private IProjectorRepository projectorRepository;
+
+	@Autowired
+	private IServerEventRepository serverEventRepository;
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	private ProjectorRegistry projectorRegistry;
+
+	@Autowired
+	private ProjectorStatusBuffer projectorStatusBuffer;
+
+	@Autowired
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	/**
+	 * Creates a server event for every projector matching the selector that has a
+	 * command for the requested action.
+	 * <p>
+	 * The event status and the projector status follow the same rules as the
+	 * batch endpoint: turning on a projector that is already on (or turning off
+	 * one that is already off) creates an executed event, otherwise the event is
+	 * pending and the projector moves to TURNING_ON/TURNING_OFF.
+	 * </p>
+	 *
+	 * @param fanOutDto The selector and action of the events.
+	 * @param userEmail The email of the user creating the events.
+	 * @return The history records of the created events.
+	 * @throws ProjectorServerException If the request is incomplete or no
+	 *                                  projector matches the selector.
+	 */
+	@Transactional
+	public List<ServerEventHistory> createServerEvents(ServerEventFanOutDto fanOutDto, String userEmail)
+			throws ProjectorServerException
+	{
+		String action = this.blankToNull(fanOutDto.getAction());
+		String floor = this.blankToNull(fanOutDto.getFloor());
+		String model = this.blankToNull(fanOutDto.getModel());
+		String status = this.blankToNull(fanOutDto.getStatus());
+
+		if (action == null) {
+			throw new ProjectorServerException(505, "Null action received during server event fan-out.");
+		}
+
+		if (!fanOutDto.isAllProjectors() && floor == null && model == null && status == null) {
+			throw new ProjectorServerException(400,
+					"Empty selector: provide a floor, model or status, or select all projectors.");
+		}
+
+		// Locks the selected projectors until the events are created.
+		long numberOfEvents = this.projectorRepository.countFanOutProjectors(action, floor, model, status);
+
+		if (numberOfEvents == 0) {
+			throw new ProjectorServerException(494, String.format(
+					"No projectors with a command for action '%s' match the selection.", action));
+		}
+
+		boolean turnOn = action.equalsIgnoreCase(Constants.TURN_ON_ACTION_NAME);
+		boolean turnOff = action.equalsIgnoreCase(Constants.TURN_OFF_ACTION_NAME);
+
+		// Projector statuses for which the action is already done.
+		List<String> executedStatuses = turnOff ? List.of(Constants.PROJECTOR_OFF, Constants.PROJECTOR_TURNING_OFF)
+				: List.of(Constants.PROJECTOR_ON, Constants.PROJECTOR_TURNING_ON);
+
+		LocalDateTime dateTime = LocalDateTime.now();
+
+		long firstEventId = this.reserveIds(this.serverEventRepository::findSequenceNextValueForUpdate,
+				this.serverEventRepository::updateSequenceNextValue, numberOfEvents);
+
+		long firstHistoryId = this.reserveIds(this.serverEventHistoryRepository::findSequenceNextValueForUpdate,
+				this.serverEventHistoryRepository::updateSequenceNextValue, numberOfEvents);
+
+		this.serverEventRepository.insertFanOutServerEvents(firstEventId, action, floor, model, status,
+				turnOn || turnOff, executedStatuses, Constants.EVENT_STATUS_EXECUTED, Constants.EVENT_STATUS_PENDING,
+				dateTime, userEmail);
+
+		this.serverEventHistoryRepository.insertFanOutServerEventHistory(firstHistoryId, action, floor, model, status,
+				turnOn || turnOff, executedStatuses, Constants.EVENT_STATUS_EXECUTED, Constants.EVENT_STATUS_PENDING,
+				dateTime, userEmail);
+
+		// The projectors with a pending event move to TURNING_ON/TURNING_OFF.
+		if (turnOn || turnOff) {
+			List<String> fromStatuses = turnOff ? List.of(Constants.PROJECTOR_ON, Constants.PROJECTOR_TURNING_ON)
+					: List.of(Constants.PROJECTOR_OFF, Constants.PROJECTOR_TURNING_OFF);
+
+			this.projectorRepository.updateFanOutProjectorsStatus(action, floor, model, status, fromStatuses,
+					turnOff ? Constants.PROJECTOR_TURNING_OFF : Constants.PROJECTOR_TURNING_ON);
+
+			this.projectorRegistry.invalidate();
+		}
+
+		List<ServerEventHistory> serverEventHistoryList = this.serverEventHistoryRepository
+				.findByEventIdBetween(firstHistoryId, firstHistoryId + numberOfEvents - 1);
+
+		// Same notifications and bookkeeping as the batch endpoint.
+		serverEventHistoryList.stream()
+				.filter(serverEvent -> Constants.EVENT_STATUS_PENDING.equals(serverEvent.getActionStatus()))
+				.forEach(serverEvent -> this.projectorStatusBuffer.discard(serverEvent.getClassroom()));
+
+		this.applicationEventPublisher.publishEvent(new ServerEventBatchCreatedEvent(serverEventHistoryList));
+
+		log.info("{} '{}' server events created by fan-out (floor={}, model={}, status={}).", numberOfEvents, action,
+				floor, model, status);
+
+		return serverEventHistoryList;
+	}
+
+	/**
+	 * Reserves a range of consecutive IDs from a Hibernate pooled sequence table.
+	 * <p>
+	 * The table holds the upper bound of the next block Hibernate will take, so
+	 * every ID above the current value is free. The table is moved forward enough
+	 * blocks for Hibernate's next block to start after the reserved range.
+	 * </p>
+	 *
+	 * @param lockNextValue   Reads and locks the current value of the table.
+	 * @param updateNextValue Writes the new value of the table.
+	 * @param count           The number of IDs to reserve.
+	 * @return The first ID of the reserved range.
+	 */
+	private long reserveIds(Supplier<Long> lockNextValue, LongConsumer updateNextValue, long count)
+	{
+		long nextValue = lockNextValue.get();
+		long blocks = (count + Constants.EVENT_ID_ALLOCATION_SIZE - 1) / Constants.EVENT_ID_ALLOCATION_SIZE + 1;
+
+		updateNextValue.accept(nextValue + blocks * Constants.EVENT_ID_ALLOCATION_SIZE);
+
+		return nextValue + 1;
+	}
+
+	/**
+	 * Normalizes an optional selector value.
+	 *
+	 * @param value The received value.
+	 * @return The trimmed value, or null if it is null or blank.
+	 */
+	private String blankToNull(String value)
+	{
+		return value == null || value.isBlank() ? null : value.trim();
+	}
+}
@@ -0,0 +1,143 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.iesjandula.reaktor.projectors_server.dtos.EventFilterObject;
+import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+
+/**
+ * Writes the server event history matching a filter to an output stream, as
+ * CSV or as newline-delimited JSON.
+ * <p>
+ * The events are read through a forward-only cursor and written as they
+ * arrive, so the memory used does not depend on the size of the export. The
+ * read-only transaction, and so a connection of the pool, is held until the
+ * whole export has been written.
+ * </p>
+ */
+@Service
+public class ServerEventHistoryExporter
+{
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+	private static final String CSV_HEADER = "eventId,action,model,classroom,floor,user,dateTime,actionStatus";
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Returns the content type of an export format.
+	 *
+	 * @param format The format: csv or ndjson.
+	 * @return The content type.
+	 * @throws ProjectorServerException If the format is not supported.
+	 */
+	public MediaType getMediaType(String format) throws ProjectorServerException
+	{
+		if (Constants.EXPORT_FORMAT_CSV.equalsIgnoreCase(format)) {
+			return new MediaType("text", "csv", StandardCharsets.UTF_8);
+		}
+		if (Constants.EXPORT_FORMAT_NDJSON.equalsIgnoreCase(format)) {
+			return NDJSON;
+		}
+		throw new ProjectorServerException(400, "Unsupported export format '" + format + "', expected '"
+				+ Constants.EXPORT_FORMAT_CSV + "' or '" + Constants.EXPORT_FORMAT_NDJSON + "'.");
+	}
+
+	/**
+	 * Writes the events matching the filter, oldest first.
+	 *
+	 * @param filter       The filters of the events.
+	 * @param format       The format: csv or ndjson.
+	 * @param outputStream The stream to write to, left open.
+	 * @return The number of events written.
+	 * @throws IOException If the stream cannot be written, e.g. the client went
+	 *                     away.
+	 */
+	@Transactional(readOnly = true)
+	public long export(EventFilterObject filter, String format, OutputStream outputStream) throws IOException
+	{
+		boolean csv = Constants.EXPORT_FORMAT_CSV.equalsIgnoreCase(format);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		long events = 0;
+
+		if (csv) {
+			writer.write(CSV_HEADER);
+			writer.write('\n');
+		}
+
+		try (Stream<TableServerEventDto> stream = this.serverEventHistoryRepository
+				.streamFilteredServerEventDtos(filter)) {
+			Iterator<TableServerEventDto> iterator = stream.iterator();
+
+			while (iterator.hasNext()) {
+				TableServerEventDto event = iterator.next();
+
+				if (csv) {
+					this.writeCsvLine(writer, event);
+				} else {
+					writer.write(this.objectMapper.writeValueAsString(event));
+					writer.write('\n');
+				}
+				events++;
+			}
+		}
+
+		writer.flush();
+		return events;
+	}
+
+	private void writeCsvLine(Writer writer, TableServerEventDto event) throws IOException
+	{
+		writer.write(String.join(",",
+				this.csvField(event.getEventId()),
+				this.csvField(event.getAction()),
+				this.csvField(event.getModel()),
+				this.csvField(event.getClassroom()),
+				this.csvField(event.getFloor()),
+				this.csvField(event.getUser()),
+				this.csvField(event.getDateTime()),
+				this.csvField(event.getActionStatus())));
+		writer.write('\n');
+	}
+
+	/**
+	 * Formats a CSV field, quoting it when it contains a separator, a quote or a
+	 * line break.
+	 *
+	 * @param value The value, can be null.
+	 * @return The field.
+	 */
+	private String csvField(Object value)
+	{
+		if (value == null) {
+			return "";
+		}
+
+		String text = value.toString();
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			return text;
+		}
+		return '"' + text.replace("\"", "\"\"") + '"';
+	}
+}
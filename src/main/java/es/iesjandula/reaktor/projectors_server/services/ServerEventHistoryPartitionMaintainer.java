@@ -0,0 +1,194 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains the monthly partitions of the {@code server_event_history} table.
+ * <p>
+ * The table is partitioned by {@code date_time} (see the V3 migration), one
+ * partition per month named {@code pYYYYMM} plus an empty catch-all partition
+ * holding the dates beyond the last month. At startup and once a day:
+ * </p>
+ * <ul>
+ * <li>The partitions of the current month and the configured number of months
+ * ahead are split from the catch-all partition. Since it is empty, no rows are
+ * copied.</li>
+ * <li>If a retention is configured, the partitions whose months are older than
+ * the retention are dropped, which discards their events without deleting them
+ * row by row.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ServerEventHistoryPartitionMaintainer
+{
+	private static final String TABLE_NAME = "server_event_history";
+
+	private static final String MAXVALUE = "MAXVALUE";
+
+	private static final DateTimeFormatter PARTITION_NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ServerEventStatusCounters serverEventStatusCounters;
+
+	/**
+	 * Number of months ahead of the current one that must have a partition.
+	 */
+	@Value("${reaktor.projectors.history-partitions.months-ahead:3}")
+	private int monthsAhead;
+
+	/**
+	 * Number of complete months of history kept besides the current one. Zero or
+	 * less keeps the whole history.
+	 */
+	@Value("${reaktor.projectors.history-partitions.retention-months:0}")
+	private int retentionMonths;
+
+	/**
+	 * Creates the upcoming partitions and drops the expired ones.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Scheduled(cron = "${reaktor.projectors.history-partitions.cron:0 30 3 * * *}")
+	public void maintain()
+	{
+		try {
+			List<HistoryPartition> partitions = this.findPartitions();
+
+			if (partitions.isEmpty()) {
+				log.warn("Table '{}' is not partitioned, partition maintenance skipped.", TABLE_NAME);
+				return;
+			}
+
+			LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+
+			this.createUpcomingPartitions(partitions, currentMonth);
+			this.dropExpiredPartitions(partitions, currentMonth);
+
+		} catch (DataAccessException e) {
+			log.error("Partition maintenance of table '{}' failed.", TABLE_NAME, e);
+		}
+	}
+
+	/**
+	 * Splits the partitions up to {@code monthsAhead} months after the current
+	 * one from the catch-all partition.
+	 *
+	 * @param partitions   The current partitions, in order.
+	 * @param currentMonth The first day of the current month.
+	 */
+	private void createUpcomingPartitions(List<HistoryPartition> partitions, LocalDate currentMonth)
+	{
+		HistoryPartition catchAll = partitions.get(partitions.size() - 1);
+
+		if (catchAll.upperBound() != null) {
+			log.warn("Table '{}' has no MAXVALUE partition, upcoming partitions not created.", TABLE_NAME);
+			return;
+		}
+
+		// Upper bound of the last monthly partition, or of the current month if there are none.
+		LocalDate lastBound = partitions.stream().map(HistoryPartition::upperBound).filter(bound -> bound != null)
+				.reduce((first, second) -> second).orElse(currentMonth);
+
+		LocalDate targetBound = currentMonth.plusMonths(this.monthsAhead + 1L);
+
+		List<String> newPartitions = new ArrayList<>();
+		for (LocalDate month = lastBound; month.isBefore(targetBound); month = month.plusMonths(1)) {
+			newPartitions.add("PARTITION " + month.format(PARTITION_NAME_FORMAT) + " VALUES LESS THAN ('"
+					+ month.plusMonths(1) + "')");
+		}
+
+		if (newPartitions.isEmpty()) {
+			return;
+		}
+
+		newPartitions.add("PARTITION " + catchAll.name() + " VALUES LESS THAN (" + MAXVALUE + ")");
+
+		this.jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION " + catchAll.name()
+				+ " INTO (" + String.join(", ", newPartitions) + ")");
+
+		log.info("{} monthly partitions created in table '{}' from {}.", newPartitions.size() - 1, TABLE_NAME,
+				lastBound);
+	}
+
+	/**
+	 * Drops the partitions holding only dates older than the retention.
+	 *
+	 * @param partitions   The partitions before creating the upcoming ones.
+	 * @param currentMonth The first day of the current month.
+	 */
+	private void dropExpiredPartitions(List<HistoryPartition> partitions, LocalDate currentMonth)
+	{
+		if (this.retentionMonths <= 0) {
+			return;
+		}
+
+		LocalDate cutoff = currentMonth.minusMonths(this.retentionMonths);
+
+		List<String> expired = partitions.stream()
+				.filter(partition -> partition.upperBound() != null && !partition.upperBound().isAfter(cutoff))
+				.map(HistoryPartition::name).collect(Collectors.toList());
+
+		if (expired.isEmpty()) {
+			return;
+		}
+
+		this.jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + String.join(", ", expired));
+
+		log.info("Partitions {} of table '{}' dropped, history kept since {}.", expired, TABLE_NAME, cutoff);
+
+		// The dropped events leave the live counters.
+		this.serverEventStatusCounters.reconcile();
+	}
+
+	/**
+	 * Reads the partitions of the history table from the data dictionary.
+	 *
+	 * @return The partitions in order, or an empty list if the table is not
+	 *         partitioned.
+	 */
+	private List<HistoryPartition> findPartitions()
+	{
+		return this.jdbcTemplate.query("""
+				SELECT PARTITION_NAME, PARTITION_DESCRIPTION
+				FROM information_schema.PARTITIONS
+				WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL
+				ORDER BY PARTITION_ORDINAL_POSITION
+				""", (resultSet, rowNum) -> {
+			String description = resultSet.getString("PARTITION_DESCRIPTION");
+
+			// The bound of a RANGE COLUMNS partition is reported as a quoted literal, e.g. '2026-11-01 00:00:00'.
+			LocalDate upperBound = MAXVALUE.equalsIgnoreCase(description) ? null
+					: LocalDate.parse(description.replace("'", "").substring(0, 10));
+
+			return new HistoryPartition(resultSet.getString("PARTITION_NAME"), upperBound);
+		}, TABLE_NAME);
+	}
+
+	/**
+	 * A partition of the history table.
+	 *
+	 * @param name       The name of the partition.
+	 * @param upperBound The exclusive upper bound, null for the MAXVALUE partition.
+	 */
+	private record HistoryPartition(String name, LocalDate upperBound)
+	{
+	}
+}
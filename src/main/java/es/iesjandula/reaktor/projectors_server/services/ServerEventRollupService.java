@@ -0,0 +1,337 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.iesjandula.reaktor.projectors_server.dtos.EventRollupDayDto;
+import es.iesjandula.reaktor.projectors_server.dtos.EventRollupFilterDto;
+import es.iesjandula.reaktor.projectors_server.dtos.EventRollupTotalDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventDailyRollup;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventRollupWatermark;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventDailyRollupRepository;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventRollupWatermarkRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.ProjectorServerException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains and queries the daily rollup of the server event history.
+ * <p>
+ * The rollup job runs in the background and only aggregates the events created
+ * since its watermark, one day per transaction, moving the watermark forward in
+ * the same transaction. Days without events are skipped, and each run
+ * aggregates a limited number of days so a long catch-up does not hold the
+ * scheduler. Events are aggregated once they are older than the
+ * configured settle delay, by then most of them have reached their final
+ * status.
+ * </p>
+ * <p>
+ * The events still pending or served at that point (e.g. their agent is
+ * offline) can change later, so every run aggregates again from scratch the
+ * days whose rollup still counts events in those statuses, until all of them
+ * are final. The counts per status end up matching the history.
+ * </p>
+ * <p>
+ * The watermark is a creation time rather than an event ID: the IDs are
+ * reserved in blocks, so they do not follow the creation order.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ServerEventRollupService
+{
+	/**
+	 * Name of the watermark of the daily rollup.
+	 */
+	private static final String DAILY_ROLLUP = "daily";
+
+	/**
+	 * Attributes of {@link ServerEventDailyRollup} the totals can be grouped by,
+	 * indexed by the name used in the requests.
+	 */
+	private static final Map<String, String> GROUP_BY_ATTRIBUTES = Map.of(
+			"classroom", "classroom",
+			"floor", "floor",
+			"model", "modelName",
+			"action", "action",
+			"user", "user",
+			"status", "actionStatus");
+
+	@Autowired
+	private IServerEventDailyRollupRepository serverEventDailyRollupRepository;
+
+	@Autowired
+	private IServerEventRollupWatermarkRepository serverEventRollupWatermarkRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Minimum age in milliseconds of an event before it is aggregated.
+	 */
+	@Value("${reaktor.projectors.event-rollup.settle-delay:3600000}")
+	private long settleDelay;
+
+	/**
+	 * Maximum number of days aggregated per run, the rest is left for the next
+	 * runs.
+	 */
+	@Value("${reaktor.projectors.event-rollup.max-days-per-run:31}")
+	private int maxDaysPerRun;
+
+	/**
+	 * Aggregates the events created since the watermark, up to the settle
+	 * delay and to the maximum number of days per run.
+	 */
+	@Scheduled(fixedDelayString = "${reaktor.projectors.event-rollup.interval:300000}")
+	public void rollUp()
+	{
+		LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(this.settleDelay));
+
+		try {
+			boolean pending = true;
+			int days = 0;
+			while (pending && days < this.maxDaysPerRun) {
+				pending = Boolean.TRUE.equals(this.transactionTemplate.execute(status -> this.rollUpNextDay(cutoff)));
+				days++;
+			}
+
+			if (pending) {
+				log.info("Daily rollup: {} days aggregated, the rest is left for the next runs.", days);
+			}
+
+			this.refreshOpenDays();
+		} catch (DataAccessException e) {
+			log.error("Daily rollup of the server event history failed, retrying later.", e);
+		}
+	}
+
+	/**
+	 * Aggregates the events from the watermark to the end of its day or to the
+	 * cutoff, whichever comes first. If the day of the watermark has no events,
+	 * it starts from the day of the next event instead. Must run inside a
+	 * transaction.
+	 *
+	 * @param cutoff The creation time up to which events are aggregated.
+	 * @return True if there are more events to aggregate before the cutoff.
+	 */
+	private boolean rollUpNextDay(LocalDateTime cutoff)
+	{
+		Optional<ServerEventRollupWatermark> watermarkOptional = this.serverEventRollupWatermarkRepository
+				.findForUpdate(DAILY_ROLLUP);
+
+		if (watermarkOptional.isEmpty()) {
+			log.error("Watermark '{}' not found, the daily rollup is not running.", DAILY_ROLLUP);
+			return false;
+		}
+
+		ServerEventRollupWatermark watermark = watermarkOptional.get();
+		LocalDateTime from = watermark.getProcessedUntil();
+
+		if (!from.isBefore(cutoff)) {
+			return false;
+		}
+
+		Optional<LocalDateTime> nextEventOptional = this.serverEventDailyRollupRepository
+				.findFirstEventDateTimeFrom(from);
+
+		if (nextEventOptional.isEmpty() || !nextEventOptional.get().isBefore(cutoff)) {
+			// Nothing to aggregate before the cutoff.
+			watermark.setProcessedUntil(cutoff);
+			return false;
+		}
+
+		if (!nextEventOptional.get().toLocalDate().equals(from.toLocalDate())) {
+			// Jump over the days without events.
+			from = nextEventOptional.get().toLocalDate().atStartOfDay();
+		}
+
+		LocalDateTime nextDay = from.toLocalDate().plusDays(1).atStartOfDay();
+		LocalDateTime to = nextDay.isBefore(cutoff) ? nextDay : cutoff;
+
+		int rows = this.serverEventDailyRollupRepository.rollUpServerEventHistory(from, to);
+		watermark.setProcessedUntil(to);
+
+		log.debug("Daily rollup: events from {} to {} aggregated ({} rows affected).", from, to, rows);
+
+		return to.isBefore(cutoff);
+	}
+
+	/**
+	 * Aggregates again, each one in its own transaction, the days whose rollup
+	 * still counts events in a status that can change. The days whose history
+	 * was dropped by the retention are left as they are.
+	 */
+	private void refreshOpenDays()
+	{
+		Optional<LocalDateTime> oldestEventOptional = this.serverEventDailyRollupRepository
+				.findFirstEventDateTimeFrom(LocalDate.EPOCH.atStartOfDay());
+
+		if (oldestEventOptional.isEmpty()) {
+			return;
+		}
+
+		List<LocalDate> openDays = this.serverEventDailyRollupRepository.findDaysWithStatuses(
+				Constants.OPEN_EVENT_STATUS, oldestEventOptional.get().toLocalDate(),
+				PageRequest.of(0, this.maxDaysPerRun));
+
+		for (LocalDate day : openDays) {
+			this.transactionTemplate.executeWithoutResult(status -> this.rollUpDayAgain(day));
+		}
+	}
+
+	/**
+	 * Replaces the rollup of a day with a new aggregation of its events, up to
+	 * the watermark if it is the day being aggregated. Must run inside a
+	 * transaction.
+	 *
+	 * @param day The day to aggregate again.
+	 */
+	private void rollUpDayAgain(LocalDate day)
+	{
+		Optional<ServerEventRollupWatermark> watermarkOptional = this.serverEventRollupWatermarkRepository
+				.findForUpdate(DAILY_ROLLUP);
+
+		if (watermarkOptional.isEmpty()) {
+			return;
+		}
+
+		LocalDateTime from = day.atStartOfDay();
+		LocalDateTime nextDay = day.plusDays(1).atStartOfDay();
+		LocalDateTime processedUntil = watermarkOptional.get().getProcessedUntil();
+		LocalDateTime to = nextDay.isBefore(processedUntil) ? nextDay : processedUntil;
+
+		if (!from.isBefore(to)) {
+			return;
+		}
+
+		this.serverEventDailyRollupRepository.deleteByEventDay(day);
+		int rows = this.serverEventDailyRollupRepository.rollUpServerEventHistory(from, to);
+
+		log.debug("Daily rollup: day {} aggregated again with its latest statuses ({} rows).", day, rows);
+	}
+
+	/**
+	 * Counts the events matching the filters per day and status.
+	 *
+	 * @param filter The filters of the report.
+	 * @return The counts ordered by day and status.
+	 */
+	@Transactional(readOnly = true)
+	public List<EventRollupDayDto> findDailyCounts(EventRollupFilterDto filter)
+	{
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<EventRollupDayDto> query = criteriaBuilder.createQuery(EventRollupDayDto.class);
+		Root<ServerEventDailyRollup> rollup = query.from(ServerEventDailyRollup.class);
+
+		Expression<LocalDate> day = rollup.get("eventDay");
+		Expression<String> actionStatus = rollup.get("actionStatus");
+
+		query.select(criteriaBuilder.construct(EventRollupDayDto.class, day, actionStatus,
+				criteriaBuilder.sum(rollup.<Long>get("eventCount"))))
+				.where(this.buildPredicates(criteriaBuilder, rollup, filter))
+				.groupBy(day, actionStatus)
+				.orderBy(criteriaBuilder.asc(day), criteriaBuilder.asc(actionStatus));
+
+		return this.entityManager.createQuery(query).getResultList();
+	}
+
+	/**
+	 * Counts the events matching the filters per value of a dimension and
+	 * status.
+	 *
+	 * @param groupBy The dimension: classroom, floor, model, action, user or
+	 *                status.
+	 * @param filter  The filters of the report.
+	 * @return The counts ordered by dimension value and status.
+	 * @throws ProjectorServerException If the dimension is not supported.
+	 */
+	@Transactional(readOnly = true)
+	public List<EventRollupTotalDto> findTotals(String groupBy, EventRollupFilterDto filter)
+			throws ProjectorServerException
+	{
+		String attribute = groupBy == null ? null : GROUP_BY_ATTRIBUTES.get(groupBy.trim().toLowerCase());
+
+		if (attribute == null) {
+			throw new ProjectorServerException(400,
+					"Unsupported grouping '" + groupBy + "', expected one of " + GROUP_BY_ATTRIBUTES.keySet() + ".");
+		}
+
+		CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+		CriteriaQuery<EventRollupTotalDto> query = criteriaBuilder.createQuery(EventRollupTotalDto.class);
+		Root<ServerEventDailyRollup> rollup = query.from(ServerEventDailyRollup.class);
+
+		Expression<String> groupKey = rollup.get(attribute);
+		Expression<String> actionStatus = rollup.get("actionStatus");
+
+		query.select(criteriaBuilder.construct(EventRollupTotalDto.class, groupKey, actionStatus,
+				criteriaBuilder.sum(rollup.<Long>get("eventCount"))))
+				.where(this.buildPredicates(criteriaBuilder, rollup, filter))
+				.groupBy(groupKey, actionStatus)
+				.orderBy(criteriaBuilder.asc(groupKey), criteriaBuilder.asc(actionStatus));
+
+		return this.entityManager.createQuery(query).getResultList();
+	}
+
+	/**
+	 * Builds the restrictions of the informed filters.
+	 *
+	 * @param criteriaBuilder The criteria builder.
+	 * @param rollup          The root of the query.
+	 * @param filter          The filters of the report.
+	 * @return The restrictions, combined with AND.
+	 */
+	private Predicate[] buildPredicates(CriteriaBuilder criteriaBuilder, Root<ServerEventDailyRollup> rollup,
+			EventRollupFilterDto filter)
+	{
+		List<Predicate> predicates = new ArrayList<>();
+
+		if (filter.getDateFrom() != null) {
+			predicates.add(criteriaBuilder.greaterThanOrEqualTo(rollup.<LocalDate>get("eventDay"), filter.getDateFrom()));
+		}
+		if (filter.getDateTo() != null) {
+			predicates.add(criteriaBuilder.lessThanOrEqualTo(rollup.<LocalDate>get("eventDay"), filter.getDateTo()));
+		}
+
+		this.addEqual(predicates, criteriaBuilder, rollup, "classroom", filter.getClassroom());
+		this.addEqual(predicates, criteriaBuilder, rollup, "floor", filter.getFloor());
+		this.addEqual(predicates, criteriaBuilder, rollup, "modelName", filter.getModel());
+		this.addEqual(predicates, criteriaBuilder, rollup, "action", filter.getAction());
+		this.addEqual(predicates, criteriaBuilder, rollup, "user", filter.getUser());
+		this.addEqual(predicates, criteriaBuilder, rollup, "actionStatus", filter.getStatus());
+
+		return predicates.toArray(new Predicate[0]);
+	}
+
+	private void addEqual(List<Predicate> predicates, CriteriaBuilder criteriaBuilder,
+			Root<ServerEventDailyRollup> rollup, String attribute, String value)
+	{
+		if (value != null && !value.isBlank()) {
+			predicates.add(criteriaBuilder.equal(rollup.get(attribute), value.trim()));
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import es.iesjandula.reaktor.projectors_server.dtos.EventStatusCountDto;
+import es.iesjandula.reaktor.projectors_server.dtos.ServerEventOverviewDto;
+import es.iesjandula.reaktor.projectors_server.entities.ServerEventHistory;
+import es.iesjandula.reaktor.projectors_server.events.ServerEventBatchCreatedEvent;
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import es.iesjandula.reaktor.projectors_server.utils.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Live number of server events in each status, kept in memory for the events
+ * overview.
+ * <p>
+ * The counters are seeded with a single grouped query at startup and then
+ * moved on every committed transition: batch and fan-out creations, served and
+ * canceled events (from the database claim or the write-behind flush) and the
+ * ACK/ERR responses of the agents. They are periodically reconciled with the
+ * database, which also absorbs the partitions dropped by the retention.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ServerEventStatusCounters
+{
+	/**
+	 * Number of events per status.
+	 */
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	/**
+	 * Set once the counters have been seeded from the database.
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Adds the events of a committed batch to the counter of their status.
+	 *
+	 * @param event The batch creation event.
+	 */
+	@TransactionalEventListener
+	public void onServerEventBatchCreated(ServerEventBatchCreatedEvent event)
+	{
+		for (ServerEventHistory serverEvent : event.getServerEvents()) {
+			this.counter(serverEvent.getActionStatus()).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Moves events from one status to another once the current transaction
+	 * commits, or right away outside a transaction.
+	 *
+	 * @param oldStatus The status the events had.
+	 * @param newStatus The status the events have now.
+	 * @param events    The number of events that changed.
+	 */
+	public void transition(String oldStatus, String newStatus, long events)
+	{
+		if (events <= 0 || Objects.equals(oldStatus, newStatus)) {
+			return;
+		}
+
+		TransactionUtils.afterCommit(() -> {
+			this.counter(oldStatus).addAndGet(-events);
+			this.counter(newStatus).addAndGet(events);
+		});
+	}
+
+	/**
+	 * Returns the overview of the events per status.
+	 *
+	 * @return The current counters.
+	 */
+	public ServerEventOverviewDto getOverview()
+	{
+		return new ServerEventOverviewDto(
+				this.get(Constants.EVENT_STATUS_ERROR),
+				this.get(Constants.EVENT_STATUS_CANCELED),
+				this.get(Constants.EVENT_STATUS_PENDING),
+				this.get(Constants.EVENT_STATUS_SERVED),
+				this.get(Constants.EVENT_STATUS_EXECUTED));
+	}
+
+	/**
+	 * Indicates whether the counters have been seeded and can be used instead of
+	 * the database.
+	 *
+	 * @return True once the counters are seeded.
+	 */
+	public boolean isReady()
+	{
+		return this.ready;
+	}
+
+	/**
+	 * Replaces the counters with the numbers in the database, logging any drift
+	 * found.
+	 * <p>
+	 * A transition committed while the grouped query runs may be applied twice
+	 * or missed, the next reconciliation corrects it.
+	 * </p>
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Scheduled(initialDelayString = "${reaktor.projectors.status-counters.reconcile-interval:600000}",
+			fixedDelayString = "${reaktor.projectors.status-counters.reconcile-interval:600000}")
+	public void reconcile()
+	{
+		Map<String, Long> databaseCounts = new HashMap<>();
+
+		try {
+			for (EventStatusCountDto statusCount : this.serverEventHistoryRepository.countServerEventsGroupedByStatus()) {
+				String status = statusCount.getActionStatus();
+				databaseCounts.put(status == null ? "" : status, statusCount.getEvents());
+			}
+		} catch (DataAccessException e) {
+			log.error("Server event status counters could not be reconciled.", e);
+			return;
+		}
+
+		// Statuses no longer in the database, e.g. after dropping old partitions.
+		this.counters.keySet().forEach(status -> databaseCounts.putIfAbsent(status, 0L));
+
+		for (Map.Entry<String, Long> entry : databaseCounts.entrySet()) {
+			long previous = this.counter(entry.getKey()).getAndSet(entry.getValue());
+
+			if (this.ready && previous != entry.getValue()) {
+				log.warn("Server event counter '{}' drifted: {} in memory, {} in the database.", entry.getKey(),
+						previous, entry.getValue());
+			}
+		}
+
+		this.ready = true;
+		log.debug("Server event status counters reconciled: {}", databaseCounts);
+	}
+
+	private long get(String status)
+	{
+		return this.counter(status).get();
+	}
+
+	private AtomicLong counter(String status)
+	{
+		// ConcurrentHashMap does not accept null keys.
+		return this.counters.computeIfAbsent(status == null ? "" : status, key -> new AtomicLong());
+	}
+}
@@ -0,0 +1,114 @@
+package es.iesjandula.reaktor.projectors_server.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import es.iesjandula.reaktor.projectors_server.repositories.IServerEventHistoryRepository;
+import es.iesjandula.reaktor.projectors_server.utils.Constants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Buffers the SERVED/CANCELED transitions performed by the in-memory dispatch
+ * queue and writes them back to the history table in batches.
+ * <p>
+ * Each flush issues one UPDATE per target status. The updates only touch
+ * events that are still pending, so an ACK/ERR received from the agent before
+ * the flush is never overwritten.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ServerEventStatusWriteBehind
+{
+	/**
+	 * Maximum number of identifiers sent in a single UPDATE statement.
+	 */
+	private static final int FLUSH_CHUNK_SIZE = 500;
+
+	/**
+	 * Transitions waiting to be written, indexed by event ID.
+	 */
+	private final Map<Long, String> pendingTransitions = new ConcurrentHashMap<>();
+
+	@Autowired
+	private IServerEventHistoryRepository serverEventHistoryRepository;
+
+	@Autowired
+	private ServerEventStatusCounters serverEventStatusCounters;
+
+	/**
+	 * Records a status transition of a pending event.
+	 *
+	 * @param eventId   The ID of the event.
+	 * @param newStatus The status to write.
+	 */
+	public void record(Long eventId, String newStatus)
+	{
+		this.pendingTransitions.put(eventId, newStatus);
+	}
+
+	/**
+	 * Drops a buffered transition that has not been written yet.
+	 *
+	 * @param eventId   The ID of the event.
+	 * @param newStatus The buffered status to drop.
+	 * @return {@code true} if the transition was still buffered and was dropped.
+	 */
+	public boolean discard(Long eventId, String newStatus)
+	{
+		return this.pendingTransitions.remove(eventId, newStatus);
+	}
+
+	/**
+	 * Writes the buffered transitions to the database. Synchronized so a caller
+	 * that flushes on demand waits for a flush already in progress.
+	 */
+	@Scheduled(fixedDelayString = "${reaktor.projectors.dispatch-queue.flush-interval:500}")
+	@PreDestroy
+	public synchronized void flush()
+	{
+		if (this.pendingTransitions.isEmpty()) {
+			return;
+		}
+
+		// Drain the buffer grouping the event IDs by their new status.
+		Map<String, List<Long>> eventIdsByStatus = new HashMap<>();
+		for (Long eventId : new ArrayList<>(this.pendingTransitions.keySet())) {
+			String newStatus = this.pendingTransitions.remove(eventId);
+			if (newStatus != null) {
+				eventIdsByStatus.computeIfAbsent(newStatus, status -> new ArrayList<>()).add(eventId);
+			}
+		}
+
+		for (Map.Entry<String, List<Long>> entry : eventIdsByStatus.entrySet()) {
+			List<Long> eventIds = entry.getValue();
+
+			for (int from = 0; from < eventIds.size(); from += FLUSH_CHUNK_SIZE) {
+				List<Long> chunk = eventIds.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, eventIds.size()));
+
+				try {
+					int updated = this.serverEventHistoryRepository.updateServerEventsStatus(chunk,
+							Constants.EVENT_STATUS_PENDING, entry.getKey());
+
+					log.debug("Write-behind: {} of {} server events updated to '{}'.", updated, chunk.size(),
+							entry.getKey());
+
+					this.serverEventStatusCounters.transition(Constants.EVENT_STATUS_PENDING, entry.getKey(), updated);
+
+				} catch (Exception e) {
+					// Keep the transitions so the next flush retries them.
+					log.error("Write-behind flush failed for {} server events, retrying later.", chunk.size(), e);
+					chunk.forEach(eventId -> this.pendingTransitions.putIfAbsent(eventId, entry.getKey()));
+				}
+			}
+		}
+	}
+}
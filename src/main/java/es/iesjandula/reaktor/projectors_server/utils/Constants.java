@@ -13,6 +13,51 @@ public final class Constants
      */
 	public static final String CSV_DELIMITER = ",";
 
+	/**
+	 * Number of CSV lines checked and stored together during an import.
+	 */
+	public static final int CSV_IMPORT_CHUNK_SIZE = 500;
+
+	/**
+	 * Maximum number of line errors detailed in the summary of an import.
+	 */
+	public static final int CSV_IMPORT_MAX_REPORTED_ERRORS = 20;
+
+	/**
+	 * Allocation size of the ID generators of the event entities, so their
+	 * INSERTs can be grouped in JDBC batches.
+	 */
+	public static final int EVENT_ID_ALLOCATION_SIZE = 50;
+
+	/**
+	 * Import mode that makes the tables match the uploaded files, applying only
+	 * the inserts, updates and deletes found.
+	 */
+	public static final String CSV_IMPORT_MODE_SYNC = "sync";
+
+	/**
+	 * Mode of the server events page that reads the events after a cursor
+	 * instead of by offset.
+	 */
+	public static final String EVENTS_PAGE_MODE_CURSOR = "cursor";
+
+	/**
+	 * Formats of the server event history export.
+	 */
+	public static final String EXPORT_FORMAT_CSV = "csv";
+	public static final String EXPORT_FORMAT_NDJSON = "ndjson";
+
+	/**
+	 * Maximum number of status reports accepted in a single batch from a remote
+	 * agent.
+	 */
+	public static final int AGENT_STATUS_BATCH_MAX_SIZE = 100;
+
+	/**
+	 * Media type of the compact wire format of the remote agents.
+	 */
+	public static final String AGENT_WIRE_MEDIA_TYPE = "text/vnd.reaktor.agent.v1";
+
 	public static final String PROJECTORS_ORDER_CRITERIA_MODELNAME = "modelname";
 
 	public static final String RESPONSE_STATUS_SUCCESS = "EXITO";
@@ -34,6 +79,10 @@ public final class Constants
 	public static final String LAMP_OFF = "LAMP_OFF";
 	public static final String STATUS_INQUIRY_COMMAND = "STATUS_INQUIRY";
 
+	public static final String AGENT_SOCKET_MESSAGE_STATUS = "STATUS";
+	public static final String AGENT_SOCKET_MESSAGE_RARC = "RARC";
+	public static final String AGENT_SOCKET_CLASSROOM_ATTRIBUTE = "projectorClassroom";
+
 	public static final String PROJECTOR_ON= "Encendido";
 	public static final String PROJECTOR_OFF = "Apagado";
 	public static final String PROJECTOR_TURNING_ON= "Encendiendo";
@@ -46,4 +95,12 @@ public final class Constants
 		    EVENT_STATUS_SERVED,
 		    EVENT_STATUS_ERROR
 		);
+
+	/**
+	 * Statuses of the server events that can still change.
+	 */
+	public static final Set<String> OPEN_EVENT_STATUS = Set.of(
+		    EVENT_STATUS_PENDING,
+		    EVENT_STATUS_SERVED
+		);
 }
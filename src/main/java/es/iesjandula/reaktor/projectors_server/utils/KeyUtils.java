@@ -0,0 +1,28 @@
+package es.iesjandula.reaktor.projectors_server.utils;
+
+import java.util.Locale;
+
+/**
+ * Class containing helpers to index in memory the values that the database
+ * compares ignoring case.
+ */
+public final class KeyUtils
+{
+	private KeyUtils()
+	{
+		// Utility class.
+	}
+
+	/**
+	 * Normalizes a classroom, model, action or code to the key it is indexed by.
+	 * The database collation compares these values ignoring case, so the
+	 * in-memory indexes and the CSV imports must match them the same way.
+	 *
+	 * @param value The value to normalize, can be null.
+	 * @return The value in lower case.
+	 */
+	public static String normalize(String value)
+	{
+		return value == null ? null : value.toLowerCase(Locale.ROOT);
+	}
+}
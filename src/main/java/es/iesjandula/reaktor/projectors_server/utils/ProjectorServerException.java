@@ -1,10 +1,8 @@
 package es.iesjandula.reaktor.projectors_server.utils;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import es.iesjandula.reaktor.projectors_server.dtos.ErrorMapDto;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -74,9 +72,9 @@ public class ProjectorServerException extends Exception
 	 * 
 	 * @return A map containing the error details. The keys are "id", "message", and "exception" (if an exception is present).
 	 */
-	public Map<String, String> getMapError()
+	public ErrorMapDto getMapError()
 	{
-		Map<String, String> mapError = new HashMap<String, String>();
+		ErrorMapDto mapError = new ErrorMapDto();
 
 		mapError.put("id", "" + id);
 		mapError.put("message", message);
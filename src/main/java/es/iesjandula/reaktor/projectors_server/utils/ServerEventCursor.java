@@ -0,0 +1,67 @@
+package es.iesjandula.reaktor.projectors_server.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import es.iesjandula.reaktor.projectors_server.dtos.TableServerEventDto;
+
+/**
+ * Position in the server events table used by the cursor pagination: the
+ * creation time and the ID of the last event of a page.
+ * <p>
+ * Clients receive it as an opaque token and send it back untouched to request
+ * the next page.
+ * </p>
+ *
+ * @param dateTime The creation time of the last event read.
+ * @param eventId  The ID of the last event read.
+ */
+public record ServerEventCursor(LocalDateTime dateTime, Long eventId)
+{
+	private static final String SEPARATOR = "|";
+
+	/**
+	 * Builds the cursor pointing after the given event.
+	 *
+	 * @param lastEvent The last event of a page.
+	 * @return The cursor.
+	 */
+	public static ServerEventCursor after(TableServerEventDto lastEvent)
+	{
+		return new ServerEventCursor(lastEvent.getDateTime(), lastEvent.getEventId());
+	}
+
+	/**
+	 * Reads a cursor from a token returned by {@link #encode()}.
+	 *
+	 * @param token The token sent by the client.
+	 * @return The cursor.
+	 * @throws ProjectorServerException If the token is not valid.
+	 */
+	public static ServerEventCursor decode(String token) throws ProjectorServerException
+	{
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int separator = value.lastIndexOf(SEPARATOR);
+
+			return new ServerEventCursor(LocalDateTime.parse(value.substring(0, separator)),
+					Long.valueOf(value.substring(separator + 1)));
+
+		} catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+			throw new ProjectorServerException(400, "Invalid cursor '" + token + "'.");
+		}
+	}
+
+	/**
+	 * Writes the cursor as an opaque, URL-safe token.
+	 *
+	 * @return The token.
+	 */
+	public String encode()
+	{
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((this.dateTime + SEPARATOR + this.eventId).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,39 @@
+package es.iesjandula.reaktor.projectors_server.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Class containing helpers to coordinate in-memory state with the database
+ * transactions.
+ */
+public final class TransactionUtils
+{
+	private TransactionUtils()
+	{
+		// Utility class.
+	}
+
+	/**
+	 * Runs the given action once the current transaction commits, or right away
+	 * if there is no transaction in progress. Used to refresh in-memory caches
+	 * only when the changes are visible to every other connection.
+	 *
+	 * @param action The action to run.
+	 */
+	public static void afterCommit(Runnable action)
+	{
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit()
+			{
+				action.run();
+			}
+		});
+	}
+}
@@ -0,0 +1,58 @@
+-- Esquema inicial, equivalente al generado por Hibernate con ddl-auto.
+-- En las bases de datos existentes se marca como aplicado (baseline-on-migrate).
+
+CREATE TABLE projector (
+    classroom VARCHAR(255) NOT NULL,
+    floor     VARCHAR(255),
+    model     VARCHAR(255),
+    status    VARCHAR(255),
+    PRIMARY KEY (classroom)
+) ENGINE = InnoDB;
+
+CREATE TABLE command (
+    action     VARCHAR(255) NOT NULL,
+    model_name VARCHAR(255) NOT NULL,
+    command    VARCHAR(255),
+    PRIMARY KEY (action, model_name)
+) ENGINE = InnoDB;
+
+CREATE TABLE server_event (
+    event_id            BIGINT NOT NULL,
+    action_status       VARCHAR(255),
+    date_time           DATETIME(6),
+    `user`              VARCHAR(255),
+    command_action      VARCHAR(255),
+    command_model_name  VARCHAR(255),
+    projector_classroom VARCHAR(255),
+    PRIMARY KEY (event_id),
+    CONSTRAINT fk_server_event_command FOREIGN KEY (command_action, command_model_name)
+        REFERENCES command (action, model_name),
+    CONSTRAINT fk_server_event_projector FOREIGN KEY (projector_classroom)
+        REFERENCES projector (classroom)
+) ENGINE = InnoDB;
+
+CREATE TABLE server_event_history (
+    event_id      BIGINT NOT NULL,
+    action        VARCHAR(255),
+    action_status VARCHAR(255),
+    classroom     VARCHAR(255),
+    command       VARCHAR(255),
+    date_time     DATETIME(6),
+    floor         VARCHAR(255),
+    model_name    VARCHAR(255),
+    `user`        VARCHAR(255),
+    PRIMARY KEY (event_id)
+) ENGINE = InnoDB;
+
+-- Tablas de secuencia usadas por Hibernate para generar los identificadores.
+CREATE TABLE server_event_seq (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO server_event_seq VALUES (1);
+
+CREATE TABLE server_event_history_seq (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO server_event_history_seq VALUES (1);
@@ -0,0 +1,20 @@
+-- Indices para las consultas mas frecuentes.
+
+-- Reclamacion de eventos pendientes por aula (sondeo de los agentes).
+CREATE INDEX idx_seh_classroom_status_date ON server_event_history (classroom, action_status, date_time);
+
+-- Recuento de eventos por estado y reconstruccion de la cola de pendientes.
+CREATE INDEX idx_seh_action_status ON server_event_history (action_status);
+
+-- Ordenacion del historial de eventos por fecha.
+CREATE INDEX idx_seh_date_time ON server_event_history (date_time);
+
+-- Filtrado del historial por usuario.
+CREATE INDEX idx_seh_user ON server_event_history (`user`);
+
+-- Busqueda de comandos por codigo de respuesta (estado y RARC de los agentes).
+CREATE INDEX idx_command_model_command ON command (model_name, command);
+
+-- Filtrado de proyectores por planta y por modelo.
+CREATE INDEX idx_projector_floor ON projector (floor);
+CREATE INDEX idx_projector_model ON projector (model);
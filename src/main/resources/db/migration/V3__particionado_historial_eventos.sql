@@ -0,0 +1,21 @@
+-- Particionado mensual del historial de eventos por date_time.
+-- MySQL exige que la columna de particionado forme parte de la clave primaria.
+
+UPDATE server_event_history SET date_time = '1970-01-01 00:00:00' WHERE date_time IS NULL;
+
+ALTER TABLE server_event_history
+    MODIFY date_time DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (event_id, date_time);
+
+-- p_inicial guarda todo el historial anterior al mes siguiente a la migracion y p_futuro
+-- queda vacia. ServerEventHistoryPartitionMaintainer crea las particiones mensuales
+-- (pAAAAMM) a partir de p_futuro y elimina las que superan la retencion configurada.
+SET @particionado = CONCAT(
+    'ALTER TABLE server_event_history PARTITION BY RANGE COLUMNS (date_time) (',
+    'PARTITION p_inicial VALUES LESS THAN (''', DATE_FORMAT(CURDATE() + INTERVAL 1 MONTH, '%Y-%m-01'), '''), ',
+    'PARTITION p_futuro VALUES LESS THAN (MAXVALUE))');
+
+PREPARE particionado FROM @particionado;
+EXECUTE particionado;
+DEALLOCATE PREPARE particionado;
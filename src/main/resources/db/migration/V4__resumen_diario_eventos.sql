@@ -0,0 +1,28 @@
+-- Resumen diario del historial de eventos, mantenido por ServerEventRollupService.
+-- Los valores nulos del historial se guardan como cadena vacia para que la clave unica los agrupe.
+CREATE TABLE server_event_daily_rollup (
+    rollup_id       BIGINT       NOT NULL AUTO_INCREMENT,
+    event_day       DATE         NOT NULL,
+    classroom       VARCHAR(255) NOT NULL DEFAULT '',
+    floor           VARCHAR(255) NOT NULL DEFAULT '',
+    model_name      VARCHAR(255) NOT NULL DEFAULT '',
+    action          VARCHAR(255) NOT NULL DEFAULT '',
+    `user`          VARCHAR(255) NOT NULL DEFAULT '',
+    action_status   VARCHAR(255) NOT NULL DEFAULT '',
+    -- MD5 de las dimensiones: una clave unica sobre las seis columnas superaria el tamaño maximo de indice.
+    dimensions_hash BINARY(16)   NOT NULL,
+    event_count     BIGINT       NOT NULL,
+    PRIMARY KEY (rollup_id),
+    UNIQUE KEY uk_rollup_day_dimensions (event_day, dimensions_hash)
+) ENGINE = InnoDB;
+
+-- Marca de agua: el historial anterior a processed_until ya esta incluido en el resumen.
+CREATE TABLE server_event_rollup_watermark (
+    rollup_name     VARCHAR(64)  NOT NULL,
+    processed_until DATETIME(6)  NOT NULL,
+    PRIMARY KEY (rollup_name)
+) ENGINE = InnoDB;
+
+-- El primer resumen empieza en el dia del evento mas antiguo.
+INSERT INTO server_event_rollup_watermark (rollup_name, processed_until)
+SELECT 'daily', COALESCE(DATE(MIN(date_time)), CURDATE()) FROM server_event_history;
@@ -0,0 +1,19 @@
+-- Indices compuestos para los filtros del historial de eventos.
+-- Cada filtro informado se combina con la ordenacion por fecha, asi que cada
+-- indice termina en date_time para leer la pagina sin ordenar en memoria.
+
+-- Filtrado por estado (tambien el recuento por estado y la reconstruccion de
+-- la cola de pendientes, que se ordena por fecha).
+DROP INDEX idx_seh_action_status ON server_event_history;
+CREATE INDEX idx_seh_status_date ON server_event_history (action_status, date_time);
+
+-- Filtrado por usuario.
+DROP INDEX idx_seh_user ON server_event_history;
+CREATE INDEX idx_seh_user_date ON server_event_history (`user`, date_time);
+
+-- Filtrado por planta y por modelo.
+CREATE INDEX idx_seh_floor_date ON server_event_history (floor, date_time);
+CREATE INDEX idx_seh_model_date ON server_event_history (model_name, date_time);
+
+-- Filtrado por accion.
+CREATE INDEX idx_seh_action_date ON server_event_history (action, date_time);
@@ -0,0 +1,12 @@
+-- Uso acumulado de la lampara de cada proyector, guardado periodicamente por ProjectorUsageAccumulator.
+-- Se elimina junto con su proyector.
+CREATE TABLE projector_usage (
+    classroom    VARCHAR(255) NOT NULL,
+    lamp_millis  BIGINT       NOT NULL DEFAULT 0,
+    lamp_ons     BIGINT       NOT NULL DEFAULT 0,
+    lamp_on      BIT(1)       NOT NULL DEFAULT b'0',
+    last_report  DATETIME(6),
+    PRIMARY KEY (classroom),
+    CONSTRAINT fk_projector_usage_projector FOREIGN KEY (classroom)
+        REFERENCES projector (classroom) ON DELETE CASCADE
+) ENGINE = InnoDB;